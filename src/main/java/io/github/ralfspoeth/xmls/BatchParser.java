@@ -0,0 +1,117 @@
+package io.github.ralfspoeth.xmls;
+
+import org.w3c.dom.Document;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Parses a sequence of files on virtual threads, keeping at most
+ * {@code parallelism} files in flight at any time.
+ *
+ * <p>The iterator pulls paths lazily from its source: whenever a result is
+ * handed out, the next path is submitted, so reading files ahead overlaps
+ * with parsing and with the consumer's processing of earlier results.
+ * Results are reported either in the order of the source or in the order of
+ * completion. A failure to parse one file is reported as a failed
+ * {@link ParseResult} and does not affect the remaining files.</p>
+ *
+ * <p>Instances are not thread-safe; they are meant to back a sequential
+ * stream which {@linkplain #close() closes} the iterator when closed.</p>
+ */
+final class BatchParser implements Iterator<ParseResult>, AutoCloseable {
+
+    private final Iterator<? extends Path> paths;
+    private final Function<Path, Document> parser;
+    private final int parallelism;
+    private final boolean ordered;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // in-flight results in source order; used if ordered
+    private final Deque<Future<ParseResult>> pending = new ArrayDeque<>();
+    // results in completion order; used if not ordered
+    private final CompletionService<ParseResult> completed = new ExecutorCompletionService<>(executor);
+    private int inFlight;
+
+    BatchParser(Iterator<? extends Path> paths, Function<Path, Document> parser, int parallelism, boolean ordered) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.paths = paths;
+        this.parser = parser;
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+    }
+
+    private ParseResult parse(Path path) {
+        try {
+            return ParseResult.success(path, parser.apply(path));
+        } catch (XmlException e) {
+            return ParseResult.failure(path, e);
+        } catch (RuntimeException e) {
+            return ParseResult.failure(path, new XmlException("Failed to parse " + path, e));
+        }
+    }
+
+    private void fill() {
+        while (inFlight < parallelism && paths.hasNext()) {
+            Path path = paths.next();
+            if (ordered) {
+                pending.add(executor.submit(() -> parse(path)));
+            } else {
+                completed.submit(() -> parse(path));
+            }
+            inFlight++;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return inFlight > 0;
+    }
+
+    @Override
+    public ParseResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            var future = ordered ? pending.getFirst() : completed.take();
+            try {
+                return future.get();
+            } finally {
+                // dropped once done, so that an interrupted wait may be resumed
+                if (future.isDone()) {
+                    if (ordered) {
+                        pending.removeFirst();
+                    }
+                    inFlight--;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XmlException("Interrupted while waiting for parse results", e);
+        } catch (ExecutionException e) {
+            // parse(Path) reports exceptions as results; this is an Error
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Stop all files still in flight and release the threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.ralfspoeth.xmls;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The path a {@link RecordBinder} binds a record component to, instead of
+ * the attribute or child element named like the component.
+ *
+ * <pre>{@code
+ * record Order(int id, @Bind("header/date") LocalDate date, @Bind("total/@currency") String currency) {}
+ * }</pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.RECORD_COMPONENT)
+public @interface Bind {
+
+    /**
+     * A relative {@link XmlPath}; one ending with an attribute step binds the
+     * component to the attribute, any other to the element.
+     *
+     * @return the path
+     */
+    String value();
+}
@@ -0,0 +1,106 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Node;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A spliterator over those child nodes of a node which are accepted by a
+ * matcher, in document order.
+ *
+ * <p>The children are visited by following the
+ * {@link Node#getFirstChild() first child} and
+ * {@link Node#getNextSibling() next sibling} pointers, without indexing the
+ * node's {@link org.w3c.dom.NodeList}; the type and name checks are fused
+ * into the single matcher, which the callers create once per navigator
+ * rather than once per parent node. Sequential traversal allocates nothing.
+ * The first split copies the remaining matching children into an array and
+ * hands the traversal over to an {@link IndexedSpliterator}, which splits in
+ * constant time from then on.</p>
+ *
+ * @param <T> the type of the nodes accepted by the matcher
+ */
+final class ChildSpliterator<T extends Node> implements Spliterator<T> {
+
+    private final Predicate<? super Node> matcher;
+    // the next child to examine, or null if the traversal is complete
+    private @Nullable Node next;
+    private @Nullable Spliterator<T> split;
+
+    /**
+     * Create a spliterator over the matching children of the given node.
+     *
+     * @param parent  the parent node
+     * @param matcher accepts nodes of type {@code T} only
+     */
+    ChildSpliterator(Node parent, Predicate<? super Node> matcher) {
+        this.matcher = matcher;
+        this.next = parent.getFirstChild();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (split != null) {
+            return split.tryAdvance(action);
+        }
+        while (next != null) {
+            var n = next;
+            next = n.getNextSibling();
+            if (matcher.test(n)) {
+                action.accept((T) n);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEachRemaining(Consumer<? super T> action) {
+        if (split != null) {
+            split.forEachRemaining(action);
+            return;
+        }
+        var n = next;
+        next = null;
+        for (; n != null; n = n.getNextSibling()) {
+            if (matcher.test(n)) {
+                action.accept((T) n);
+            }
+        }
+    }
+
+    @Override
+    public @Nullable Spliterator<T> trySplit() {
+        if (split == null) {
+            var items = new Object[16];
+            int length = 0;
+            for (var n = next; n != null; n = n.getNextSibling()) {
+                if (matcher.test(n)) {
+                    if (length == items.length) {
+                        items = Arrays.copyOf(items, 2 * length);
+                    }
+                    items[length++] = n;
+                }
+            }
+            next = null;
+            split = IndexedSpliterator.of(items, length);
+        }
+        return split.trySplit();
+    }
+
+    @Override
+    public long estimateSize() {
+        return split != null ? split.estimateSize() : next == null ? 0 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return split != null ? split.characteristics() : ORDERED | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,232 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.BitSet;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A batch of elements from which numeric fields are extracted into
+ * primitive arrays, one column per field.
+ *
+ * <p>Extracting a field of many elements through the typed parsers of
+ * {@link XmlFunctions} wraps each value in an {@code Optional} and, once
+ * collected, in a box; a column holds the values parsed from the elements
+ * in an {@code int[]}, {@code long[]} or {@code double[]} of the size of
+ * the batch instead. A field is given as a function from an element to the
+ * text of the value, or {@code null} if the element has none, such as
+ * {@link #attribute(String)} or {@link #content()}. Missing values are
+ * stored as zero; a {@link BitSet} passed along records which values are
+ * present. Values are parsed like the typed parsers of
+ * {@link XmlFunctions} do, ignoring leading and trailing whitespace.</p>
+ *
+ * <p>A batch created for parallel extraction fills its columns in
+ * chunks whose bounds are multiples of 64, so that no two threads share a
+ * word of the presence bitmap; it requires a document which is safe for
+ * concurrent reads, see {@link Xml#freeze(Document)}. Instances are
+ * immutable and thread-safe.</p>
+ */
+public final class Columns {
+
+    // the number of elements per parallel task, a multiple of 64
+    private static final int CHUNK = 1 << 12;
+
+    private final Element[] elements;
+    private final boolean parallel;
+
+    private Columns(Element[] elements, boolean parallel) {
+        this.elements = elements;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Collect the given elements into a batch for sequential extraction.
+     *
+     * @param elements the elements
+     * @return the batch
+     */
+    public static Columns of(Stream<? extends Element> elements) {
+        return of(elements, false);
+    }
+
+    /**
+     * Collect the given elements into a batch, optionally for parallel
+     * extraction.
+     *
+     * @param elements the elements
+     * @param parallel whether to fill columns in parallel
+     * @return the batch
+     */
+    public static Columns of(Stream<? extends Element> elements, boolean parallel) {
+        return new Columns(elements.toArray(Element[]::new), parallel);
+    }
+
+    /**
+     * Create a batch of the given elements, optionally for parallel
+     * extraction. The array is copied.
+     *
+     * @param elements the elements
+     * @param parallel whether to fill columns in parallel
+     * @return the batch
+     */
+    public static Columns of(Element[] elements, boolean parallel) {
+        return new Columns(elements.clone(), parallel);
+    }
+
+    /**
+     * The field made up of the value of the attribute with the given
+     * qualified name.
+     *
+     * @param name the qualified name of the attribute
+     * @return the field; {@code null} for elements without the attribute
+     */
+    public static Function<Element, @Nullable String> attribute(String name) {
+        return e -> {
+            var attr = e.getAttributeNode(name);
+            return attr == null ? null : attr.getValue();
+        };
+    }
+
+    /**
+     * The field made up of the text content of the element.
+     *
+     * @return the field; never {@code null}
+     */
+    public static Function<Element, @Nullable String> content() {
+        return Element::getTextContent;
+    }
+
+    /**
+     * The number of elements in this batch, which is the length of its
+     * columns.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return elements.length;
+    }
+
+    /**
+     * Parse the given field of each element as an {@code int}.
+     *
+     * @param field the field
+     * @return the values, zero where missing
+     * @throws NumberFormatException if a value is not a valid integer
+     */
+    public int[] ints(Function<? super Element, @Nullable String> field) {
+        var values = new int[elements.length];
+        fill(field, (i, s) -> values[i] = Lexical.parseIntTrimmed(s));
+        return values;
+    }
+
+    /**
+     * Same as {@link #ints(Function)}, recording in the given bitmap which
+     * values are present.
+     *
+     * @param field   the field
+     * @param present the bitmap, whose bit {@code i} is set if the element at
+     *                index {@code i} has a value and cleared otherwise
+     * @return the values, zero where missing
+     * @throws NumberFormatException if a value is not a valid integer
+     */
+    public int[] ints(Function<? super Element, @Nullable String> field, BitSet present) {
+        var values = new int[elements.length];
+        record(present, fill(field, (i, s) -> values[i] = Lexical.parseIntTrimmed(s)));
+        return values;
+    }
+
+    /**
+     * Parse the given field of each element as a {@code long}.
+     *
+     * @param field the field
+     * @return the values, zero where missing
+     * @throws NumberFormatException if a value is not a valid integer
+     */
+    public long[] longs(Function<? super Element, @Nullable String> field) {
+        var values = new long[elements.length];
+        fill(field, (i, s) -> values[i] = Lexical.parseLongTrimmed(s));
+        return values;
+    }
+
+    /**
+     * Same as {@link #longs(Function)}, recording in the given bitmap which
+     * values are present.
+     *
+     * @param field   the field
+     * @param present the bitmap, whose bit {@code i} is set if the element at
+     *                index {@code i} has a value and cleared otherwise
+     * @return the values, zero where missing
+     * @throws NumberFormatException if a value is not a valid integer
+     */
+    public long[] longs(Function<? super Element, @Nullable String> field, BitSet present) {
+        var values = new long[elements.length];
+        record(present, fill(field, (i, s) -> values[i] = Lexical.parseLongTrimmed(s)));
+        return values;
+    }
+
+    /**
+     * Parse the given field of each element as a {@code double}.
+     *
+     * @param field the field
+     * @return the values, zero where missing
+     * @throws NumberFormatException if a value is not a valid number
+     */
+    public double[] doubles(Function<? super Element, @Nullable String> field) {
+        var values = new double[elements.length];
+        fill(field, (i, s) -> values[i] = Lexical.parseDoubleTrimmed(s));
+        return values;
+    }
+
+    /**
+     * Same as {@link #doubles(Function)}, recording in the given bitmap which
+     * values are present.
+     *
+     * @param field   the field
+     * @param present the bitmap, whose bit {@code i} is set if the element at
+     *                index {@code i} has a value and cleared otherwise
+     * @return the values, zero where missing
+     * @throws NumberFormatException if a value is not a valid number
+     */
+    public double[] doubles(Function<? super Element, @Nullable String> field, BitSet present) {
+        var values = new double[elements.length];
+        record(present, fill(field, (i, s) -> values[i] = Lexical.parseDoubleTrimmed(s)));
+        return values;
+    }
+
+    @FunctionalInterface
+    private interface Sink {
+        void put(int index, String value);
+    }
+
+    private static void record(BitSet present, long[] words) {
+        present.clear();
+        present.or(BitSet.valueOf(words));
+    }
+
+    // stores the value of each element which has one, returning the presence bitmap
+    private long[] fill(Function<? super Element, @Nullable String> field, Sink sink) {
+        var words = new long[(elements.length + Long.SIZE - 1) / Long.SIZE];
+        if (parallel && elements.length > CHUNK) {
+            IntStream.range(0, (elements.length + CHUNK - 1) / CHUNK)
+                    .parallel()
+                    .forEach(c -> fill(field, sink, words, c * CHUNK, Math.min(elements.length, (c + 1) * CHUNK)));
+        } else {
+            fill(field, sink, words, 0, elements.length);
+        }
+        return words;
+    }
+
+    private void fill(Function<? super Element, @Nullable String> field, Sink sink, long[] words, int from, int to) {
+        for (int i = from; i < to; i++) {
+            var value = field.apply(elements[i]);
+            if (value != null) {
+                sink.put(i, value);
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+}
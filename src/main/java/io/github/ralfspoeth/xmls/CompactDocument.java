@@ -0,0 +1,483 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/**
+ * An immutable, array-backed XML tree for read-only workloads; a compact
+ * alternative to the W3C {@link Document}.
+ *
+ * <p>The tree holds elements and text only. Comments, processing
+ * instructions and the document type declaration are dropped, adjacent text
+ * and CDATA sections are merged into one text node, and namespace
+ * declarations are not kept as attributes. Each node takes a fixed number of
+ * {@code int}s: its name as an index into a table of interned names, the
+ * index of its parent, and the index after its subtree. Nodes are stored in
+ * document order, so the first child of a node is the node following it,
+ * its next sibling is the node following its subtree, and its descendants
+ * form a contiguous range. The characters of all text and attribute values
+ * are kept in a single shared buffer. A document typically takes a fraction
+ * of the heap taken by the DOM built from the same source.</p>
+ *
+ * <p>Documents are created either straight from a StAX parse with
+ * {@link #parse(InputStream)} and its overloads, which never builds a DOM,
+ * or from an existing {@link Document} with {@link #of(Document)}.
+ * Elements are navigated through {@link CompactElement} views, starting
+ * at the {@link #root()}. As a document never changes, it may be read from
+ * any number of threads, and its streams split well for parallel
+ * processing.</p>
+ */
+public final class CompactDocument {
+
+    // the name of each node; NO_NAME for text nodes
+    private final int[] name;
+    // the parent of each node; -1 for the root
+    private final int[] parent;
+    // the index after the subtree of each node
+    private final int[] end;
+    // elements: the index of the first attribute; text: the offset of the characters
+    private final int[] first;
+    // elements: the number of attributes; text: the number of characters
+    private final int[] length;
+    private final int[] attributeName;
+    private final int[] valueOffset;
+    private final int[] valueLength;
+    private final char[] chars;
+    // a view of chars for the parsers which accept a CharSequence
+    private final CharSequence charSequence;
+    private final String[] qualifiedNames;
+    private final String[] localNames;
+    private final String[] namespaces;
+
+    static final int NO_NAME = -1;
+
+    private CompactDocument(Builder builder) {
+        int n = builder.nodes;
+        this.name = Arrays.copyOf(builder.name, n);
+        this.parent = Arrays.copyOf(builder.parent, n);
+        this.end = Arrays.copyOf(builder.end, n);
+        this.first = Arrays.copyOf(builder.first, n);
+        this.length = Arrays.copyOf(builder.length, n);
+        int a = builder.attributes;
+        this.attributeName = Arrays.copyOf(builder.attributeName, a);
+        this.valueOffset = Arrays.copyOf(builder.valueOffset, a);
+        this.valueLength = Arrays.copyOf(builder.valueLength, a);
+        this.chars = Arrays.copyOf(builder.chars, builder.charCount);
+        this.charSequence = CharBuffer.wrap(chars).asReadOnlyBuffer();
+        int s = builder.symbols.size();
+        this.qualifiedNames = Arrays.copyOf(builder.qualifiedNames, s);
+        this.localNames = Arrays.copyOf(builder.localNames, s);
+        this.namespaces = Arrays.copyOf(builder.namespaces, s);
+    }
+
+    /**
+     * Copy the elements, attributes and text of a document into a compact
+     * tree.
+     *
+     * <p>Names are taken over as they are: the namespace URI and local name
+     * of the nodes of a document parsed without namespace awareness are
+     * empty and equal to the qualified name, respectively. Entity
+     * references are replaced by their content.</p>
+     *
+     * @param doc the document
+     * @return the compact copy of the document
+     * @throws IllegalArgumentException if the document has no document element
+     */
+    public static CompactDocument of(Document doc) {
+        var root = doc.getDocumentElement();
+        if (root == null) {
+            throw new IllegalArgumentException("document has no document element");
+        }
+        var builder = new Builder();
+        @Nullable Node n = root;
+        while (n != null) {
+            boolean enter = switch (n) {
+                case Element e -> {
+                    builder.startElement(e.getNamespaceURI(), e.getTagName(), e.getLocalName());
+                    var attributes = e.getAttributes();
+                    for (int i = 0; i < attributes.getLength(); i++) {
+                        var a = (Attr) attributes.item(i);
+                        if (!isNamespaceDeclaration(a)) {
+                            builder.attribute(a.getNamespaceURI(), a.getName(), a.getLocalName(), a.getValue());
+                        }
+                    }
+                    yield true;
+                }
+                case Text t -> {
+                    builder.text(t.getData());
+                    yield false;
+                }
+                case EntityReference ignored -> true;
+                default -> false;
+            };
+            var child = enter ? n.getFirstChild() : null;
+            if (child != null) {
+                n = child;
+                continue;
+            }
+            // leave n and its ancestors up to the first one with a next sibling
+            while (true) {
+                if (n instanceof Element) {
+                    builder.endElement();
+                }
+                if (n == root) {
+                    n = null;
+                    break;
+                }
+                var sibling = n.getNextSibling();
+                if (sibling != null) {
+                    n = sibling;
+                    break;
+                }
+                n = n.getParentNode();
+            }
+        }
+        return new CompactDocument(builder);
+    }
+
+    private static boolean isNamespaceDeclaration(Attr a) {
+        var name = a.getName();
+        return XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(a.getNamespaceURI())
+                || name.equals(XMLConstants.XMLNS_ATTRIBUTE)
+                || name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":");
+    }
+
+    /**
+     * Parse the given source text into a compact tree.
+     *
+     * @param src the XML source
+     * @return the document
+     * @throws XmlException if parsing fails
+     */
+    public static CompactDocument parse(CharSequence src) {
+        return parse(StaxSupport.reader(Reader.of(src)));
+    }
+
+    /**
+     * Parse the given stream into a compact tree. The stream is not closed.
+     *
+     * @param in the input stream
+     * @return the document
+     * @throws XmlException if parsing fails
+     */
+    public static CompactDocument parse(InputStream in) {
+        return parse(StaxSupport.reader(in));
+    }
+
+    /**
+     * Parse the given reader into a compact tree. The reader is not closed.
+     *
+     * @param reader the reader
+     * @return the document
+     * @throws XmlException if parsing fails
+     */
+    public static CompactDocument parse(Reader reader) {
+        return parse(StaxSupport.reader(reader));
+    }
+
+    /**
+     * Parse the given file into a compact tree.
+     *
+     * @param path the file
+     * @return the document
+     * @throws XmlException if reading or parsing fails
+     */
+    public static CompactDocument parse(Path path) {
+        try (var in = Files.newInputStream(path)) {
+            return parse(in);
+        } catch (IOException e) {
+            throw new XmlException("Failed to read " + path, e);
+        }
+    }
+
+    private static CompactDocument parse(XMLStreamReader reader) {
+        var builder = new Builder();
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case START_ELEMENT -> {
+                        builder.startElement(
+                                reader.getNamespaceURI(),
+                                StaxSupport.qualifiedName(reader.getPrefix(), reader.getLocalName()),
+                                reader.getLocalName()
+                        );
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            builder.attribute(
+                                    reader.getAttributeNamespace(i),
+                                    StaxSupport.qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                                    reader.getAttributeLocalName(i),
+                                    reader.getAttributeValue(i)
+                            );
+                        }
+                    }
+                    case END_ELEMENT -> builder.endElement();
+                    case CHARACTERS, CDATA, SPACE -> {
+                        // text outside the document element is ignorable white space
+                        if (builder.depth > 0) {
+                            builder.text(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                    }
+                    default -> {
+                        // comments, processing instructions and DTDs are not kept
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new XmlException(e);
+        } finally {
+            StaxSupport.close(reader);
+        }
+        return new CompactDocument(builder);
+    }
+
+    /**
+     * The document element.
+     *
+     * @return the root of the tree
+     */
+    public CompactElement root() {
+        return new CompactElement(this, 0);
+    }
+
+    /**
+     * The number of nodes, elements and text nodes, in the tree.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return name.length;
+    }
+
+    // package-private accessors for CompactElement
+
+    boolean isElement(int node) {
+        return name[node] != NO_NAME;
+    }
+
+    int name(int node) {
+        return name[node];
+    }
+
+    int parent(int node) {
+        return parent[node];
+    }
+
+    int end(int node) {
+        return end[node];
+    }
+
+    String qualifiedName(int symbol) {
+        return qualifiedNames[symbol];
+    }
+
+    String localName(int symbol) {
+        return localNames[symbol];
+    }
+
+    String namespace(int symbol) {
+        return namespaces[symbol];
+    }
+
+    int symbolCount() {
+        return qualifiedNames.length;
+    }
+
+    int firstAttribute(int element) {
+        return first[element];
+    }
+
+    int attributeCount(int element) {
+        return length[element];
+    }
+
+    int attributeName(int attribute) {
+        return attributeName[attribute];
+    }
+
+    int valueStart(int attribute) {
+        return valueOffset[attribute];
+    }
+
+    int valueEnd(int attribute) {
+        return valueOffset[attribute] + valueLength[attribute];
+    }
+
+    int textStart(int text) {
+        return first[text];
+    }
+
+    int textEnd(int text) {
+        return first[text] + length[text];
+    }
+
+    String string(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    CharSequence chars() {
+        return charSequence;
+    }
+
+    void appendText(StringBuilder sb, int text) {
+        sb.append(chars, first[text], length[text]);
+    }
+
+    /**
+     * The symbols accepted by the given predicate.
+     *
+     * @param accept the predicate
+     * @return a mask indexed by symbol
+     */
+    boolean[] symbols(IntPredicate accept) {
+        var mask = new boolean[symbolCount()];
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = accept.test(i);
+        }
+        return mask;
+    }
+
+    /**
+     * Collects the nodes in document order into growable arrays.
+     */
+    private static final class Builder {
+
+        private record Symbol(String namespace, String qualifiedName) {}
+
+        private final Map<Symbol, Integer> symbols = new HashMap<>();
+        private String[] qualifiedNames = new String[16];
+        private String[] localNames = new String[16];
+        private String[] namespaces = new String[16];
+
+        private int nodes;
+        private int[] name = new int[64];
+        private int[] parent = new int[64];
+        private int[] end = new int[64];
+        private int[] first = new int[64];
+        private int[] length = new int[64];
+
+        private int attributes;
+        private int[] attributeName = new int[16];
+        private int[] valueOffset = new int[16];
+        private int[] valueLength = new int[16];
+
+        private int charCount;
+        private char[] chars = new char[256];
+
+        // the open element, or -1
+        private int current = -1;
+        private int depth;
+
+        private int symbol(@Nullable String namespace, String qualifiedName, @Nullable String localName) {
+            var key = new Symbol(StaxSupport.namespace(namespace), qualifiedName);
+            var id = symbols.get(key);
+            if (id == null) {
+                id = symbols.size();
+                if (id == qualifiedNames.length) {
+                    qualifiedNames = Arrays.copyOf(qualifiedNames, 2 * id);
+                    localNames = Arrays.copyOf(localNames, 2 * id);
+                    namespaces = Arrays.copyOf(namespaces, 2 * id);
+                }
+                qualifiedNames[id] = qualifiedName.intern();
+                localNames[id] = (localName == null ? qualifiedName : localName).intern();
+                namespaces[id] = key.namespace().intern();
+                symbols.put(key, id);
+            }
+            return id;
+        }
+
+        private int node(int nodeName) {
+            if (nodes == name.length) {
+                int capacity = 2 * nodes;
+                name = Arrays.copyOf(name, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                end = Arrays.copyOf(end, capacity);
+                first = Arrays.copyOf(first, capacity);
+                length = Arrays.copyOf(length, capacity);
+            }
+            int node = nodes++;
+            name[node] = nodeName;
+            parent[node] = current;
+            end[node] = node + 1;
+            return node;
+        }
+
+        private int appendChars(char[] src, int offset, int count) {
+            if (charCount + count > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(2 * chars.length, charCount + count));
+            }
+            System.arraycopy(src, offset, chars, charCount, count);
+            int start = charCount;
+            charCount += count;
+            return start;
+        }
+
+        void startElement(@Nullable String namespace, String qualifiedName, @Nullable String localName) {
+            int node = node(symbol(namespace, qualifiedName, localName));
+            first[node] = attributes;
+            length[node] = 0;
+            current = node;
+            depth++;
+        }
+
+        void attribute(@Nullable String namespace, String qualifiedName, @Nullable String localName, String value) {
+            if (attributes == attributeName.length) {
+                int capacity = 2 * attributes;
+                attributeName = Arrays.copyOf(attributeName, capacity);
+                valueOffset = Arrays.copyOf(valueOffset, capacity);
+                valueLength = Arrays.copyOf(valueLength, capacity);
+            }
+            attributeName[attributes] = symbol(namespace, qualifiedName, localName);
+            valueOffset[attributes] = appendChars(value.toCharArray(), 0, value.length());
+            valueLength[attributes] = value.length();
+            attributes++;
+            length[current]++;
+        }
+
+        void text(String data) {
+            text(data.toCharArray(), 0, data.length());
+        }
+
+        void text(char[] src, int offset, int count) {
+            if (count == 0) {
+                return;
+            }
+            int start = appendChars(src, offset, count);
+            int last = nodes - 1;
+            // merge with a directly preceding text sibling
+            if (name[last] == NO_NAME && parent[last] == current && first[last] + length[last] == start) {
+                length[last] += count;
+                return;
+            }
+            int node = node(NO_NAME);
+            first[node] = start;
+            length[node] = count;
+        }
+
+        void endElement() {
+            end[current] = nodes;
+            current = parent[current];
+            depth--;
+        }
+    }
+}
@@ -0,0 +1,567 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A view of an element of a {@link CompactDocument}.
+ *
+ * <p>The navigation and typed extraction methods mirror those of
+ * {@link XmlStreams} and {@link XmlFunctions}: names are matched against
+ * qualified names, or against namespace URI and local name, with
+ * {@code "*"} matching any; namespace URIs are reported as the empty string
+ * for names without namespace; attribute values are parsed as they are and
+ * text content is trimmed. Views are cheap to create and compare equal if
+ * they refer to the same element of the same document.</p>
+ *
+ * @param document the document
+ * @param index    the index of the element within the document
+ */
+public record CompactElement(CompactDocument document, int index) {
+
+    /**
+     * Validate the index.
+     *
+     * @param document the document
+     * @param index    the index of the element within the document
+     * @throws IndexOutOfBoundsException if the index is out of range
+     * @throws IllegalArgumentException  if the node at the index is not an element
+     */
+    public CompactElement {
+        Objects.checkIndex(index, document.size());
+        if (!document.isElement(index)) {
+            throw new IllegalArgumentException("not an element: " + index);
+        }
+    }
+
+    /**
+     * The qualified name of the element.
+     *
+     * @return the name including the prefix, if any
+     */
+    public String name() {
+        return document.qualifiedName(document.name(index));
+    }
+
+    /**
+     * The local name of the element.
+     *
+     * @return the name without prefix
+     */
+    public String localName() {
+        return document.localName(document.name(index));
+    }
+
+    /**
+     * The namespace URI of the element.
+     *
+     * @return the namespace URI, or the empty string if the element has none
+     */
+    public String namespaceURI() {
+        return document.namespace(document.name(index));
+    }
+
+    /**
+     * The parent element.
+     *
+     * @return the parent, or an empty optional for the root
+     */
+    public Optional<CompactElement> parent() {
+        int p = document.parent(index);
+        return p < 0 ? Optional.empty() : Optional.of(new CompactElement(document, p));
+    }
+
+    /**
+     * The child elements in document order.
+     *
+     * @return a stream of the child elements
+     */
+    public Stream<CompactElement> children() {
+        return childrenMatching(null);
+    }
+
+    /**
+     * The child elements with the given qualified name, or all children
+     * if the name is {@code "*"}.
+     *
+     * @param name the qualified name
+     * @return a stream of the matching child elements
+     */
+    public Stream<CompactElement> children(String name) {
+        return childrenMatching(byName(name));
+    }
+
+    /**
+     * The child elements with the given namespace URI and local name, either
+     * of which may be {@code "*"}.
+     *
+     * @param ns        the namespace URI
+     * @param localName the local name
+     * @return a stream of the matching child elements
+     */
+    public Stream<CompactElement> children(String ns, String localName) {
+        return childrenMatching(byNamespace(ns, localName));
+    }
+
+    /**
+     * The descendant elements in document order, not including this element.
+     * The stream splits evenly for parallel processing.
+     *
+     * @return a stream of the descendant elements
+     */
+    public Stream<CompactElement> descendants() {
+        return descendantsMatching(null);
+    }
+
+    /**
+     * The descendant elements with the given qualified name, or all
+     * descendants if the name is {@code "*"}.
+     *
+     * @param name the qualified name
+     * @return a stream of the matching descendant elements
+     */
+    public Stream<CompactElement> descendants(String name) {
+        return descendantsMatching(byName(name));
+    }
+
+    /**
+     * The descendant elements with the given namespace URI and local name,
+     * either of which may be {@code "*"}.
+     *
+     * @param ns        the namespace URI
+     * @param localName the local name
+     * @return a stream of the matching descendant elements
+     */
+    public Stream<CompactElement> descendants(String ns, String localName) {
+        return descendantsMatching(byNamespace(ns, localName));
+    }
+
+    private boolean @Nullable [] byName(String name) {
+        return name.equals("*") ? null : document.symbols(s -> document.qualifiedName(s).equals(name));
+    }
+
+    private boolean @Nullable [] byNamespace(String ns, String localName) {
+        if (ns.equals("*") && localName.equals("*")) {
+            return null;
+        }
+        return document.symbols(s -> (ns.equals("*") || document.namespace(s).equals(ns))
+                && (localName.equals("*") || document.localName(s).equals(localName)));
+    }
+
+    private boolean matches(int node, boolean @Nullable [] symbols) {
+        int name = document.name(node);
+        return name != CompactDocument.NO_NAME && (symbols == null || symbols[name]);
+    }
+
+    private Stream<CompactElement> childrenMatching(boolean @Nullable [] symbols) {
+        int end = document.end(index);
+        return IntStream.iterate(index + 1, i -> i < end, document::end)
+                .filter(i -> matches(i, symbols))
+                .mapToObj(i -> new CompactElement(document, i));
+    }
+
+    private Stream<CompactElement> descendantsMatching(boolean @Nullable [] symbols) {
+        return IntStream.range(index + 1, document.end(index))
+                .filter(i -> matches(i, symbols))
+                .mapToObj(i -> new CompactElement(document, i));
+    }
+
+    private int attributeIndex(String name) {
+        int first = document.firstAttribute(index);
+        int end = first + document.attributeCount(index);
+        for (int a = first; a < end; a++) {
+            if (document.qualifiedName(document.attributeName(a)).equals(name)) {
+                return a;
+            }
+        }
+        return -1;
+    }
+
+    private int attributeIndex(String ns, String localName) {
+        int first = document.firstAttribute(index);
+        int end = first + document.attributeCount(index);
+        for (int a = first; a < end; a++) {
+            int symbol = document.attributeName(a);
+            if (document.localName(symbol).equals(localName) && document.namespace(symbol).equals(ns)) {
+                return a;
+            }
+        }
+        return -1;
+    }
+
+    private String value(int attribute) {
+        return document.string(document.valueStart(attribute), document.valueEnd(attribute));
+    }
+
+    /**
+     * The attributes of the element in the order they were read, keyed by
+     * qualified name.
+     *
+     * @return an unmodifiable map of the attribute values
+     */
+    public Map<String, String> attributes() {
+        int first = document.firstAttribute(index);
+        int end = first + document.attributeCount(index);
+        var attributes = new LinkedHashMap<String, String>();
+        for (int a = first; a < end; a++) {
+            attributes.put(document.qualifiedName(document.attributeName(a)), value(a));
+        }
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * The value of the attribute with the given qualified name.
+     *
+     * @param name the qualified name
+     * @return the value, or an empty optional if there is no such attribute
+     */
+    public Optional<String> attributeValue(String name) {
+        int a = attributeIndex(name);
+        return a < 0 ? Optional.empty() : Optional.of(value(a));
+    }
+
+    /**
+     * The value of the attribute with the given namespace URI and local name.
+     *
+     * @param ns        the namespace URI; the empty string for none
+     * @param localName the local name
+     * @return the value, or an empty optional if there is no such attribute
+     */
+    public Optional<String> attributeValue(String ns, String localName) {
+        int a = attributeIndex(ns, localName);
+        return a < 0 ? Optional.empty() : Optional.of(value(a));
+    }
+
+    /**
+     * Parse the value of the attribute with the given qualified name.
+     *
+     * @param name   the qualified name
+     * @param parser the parser
+     * @param <T>    the type of the parsed value
+     * @return the parsed value, or an empty optional if there is no such attribute
+     */
+    public <T> Optional<T> attributeValue(String name, Function<? super String, ? extends T> parser) {
+        return attributeValue(name).map(parser);
+    }
+
+    /**
+     * Parse the named attribute into an optional {@code int} value.
+     *
+     * @param name the qualified name
+     * @return the parsed value, or an empty optional if there is no such attribute
+     * @throws NumberFormatException if the value is not a valid {@code int}
+     */
+    public OptionalInt intValue(String name) {
+        int a = attributeIndex(name);
+        return a < 0 ? OptionalInt.empty() : OptionalInt.of(intValue(a));
+    }
+
+    /**
+     * Parse the named attribute into an {@code int} value without allocating.
+     *
+     * @param name         the qualified name
+     * @param defaultValue the value returned if there is no such attribute
+     * @return the parsed value, or {@code defaultValue}
+     * @throws NumberFormatException if the value is not a valid {@code int}
+     */
+    public int intValueOr(String name, int defaultValue) {
+        int a = attributeIndex(name);
+        return a < 0 ? defaultValue : intValue(a);
+    }
+
+    private int intValue(int attribute) {
+        return Integer.parseInt(document.chars(), document.valueStart(attribute), document.valueEnd(attribute), 10);
+    }
+
+    /**
+     * Parse the named attribute into an optional {@code long} value.
+     *
+     * @param name the qualified name
+     * @return the parsed value, or an empty optional if there is no such attribute
+     * @throws NumberFormatException if the value is not a valid {@code long}
+     */
+    public OptionalLong longValue(String name) {
+        int a = attributeIndex(name);
+        return a < 0 ? OptionalLong.empty() : OptionalLong.of(longValue(a));
+    }
+
+    /**
+     * Parse the named attribute into a {@code long} value without allocating.
+     *
+     * @param name         the qualified name
+     * @param defaultValue the value returned if there is no such attribute
+     * @return the parsed value, or {@code defaultValue}
+     * @throws NumberFormatException if the value is not a valid {@code long}
+     */
+    public long longValueOr(String name, long defaultValue) {
+        int a = attributeIndex(name);
+        return a < 0 ? defaultValue : longValue(a);
+    }
+
+    private long longValue(int attribute) {
+        return Long.parseLong(document.chars(), document.valueStart(attribute), document.valueEnd(attribute), 10);
+    }
+
+    /**
+     * Parse the named attribute into an optional {@code double} value.
+     *
+     * @param name the qualified name
+     * @return the parsed value, or an empty optional if there is no such attribute
+     * @throws NumberFormatException if the value is not a valid {@code double}
+     */
+    public OptionalDouble doubleValue(String name) {
+        int a = attributeIndex(name);
+        return a < 0 ? OptionalDouble.empty() : OptionalDouble.of(Double.parseDouble(value(a)));
+    }
+
+    /**
+     * Parse the named attribute into a {@code double} value.
+     *
+     * @param name         the qualified name
+     * @param defaultValue the value returned if there is no such attribute
+     * @return the parsed value, or {@code defaultValue}
+     * @throws NumberFormatException if the value is not a valid {@code double}
+     */
+    public double doubleValueOr(String name, double defaultValue) {
+        int a = attributeIndex(name);
+        return a < 0 ? defaultValue : Double.parseDouble(value(a));
+    }
+
+    /**
+     * Parse the named attribute into an optional {@link BigDecimal} value.
+     *
+     * @param name the qualified name
+     * @return the parsed value, or an empty optional if there is no such attribute
+     * @throws NumberFormatException if the value is not a valid {@link BigDecimal}
+     */
+    public Optional<BigDecimal> decimalValue(String name) {
+        return attributeValue(name, BigDecimal::new);
+    }
+
+    /**
+     * Parse the named attribute into an optional {@link LocalDate} value,
+     * see {@link XmlFunctions#dateValue(org.w3c.dom.Attr)}.
+     *
+     * @param name the qualified name
+     * @return the parsed value, or an empty optional if there is no such attribute
+     * @throws java.time.format.DateTimeParseException if the value cannot be parsed
+     */
+    public Optional<LocalDate> dateValue(String name) {
+        return attributeValue(name, Lexical::parseDate);
+    }
+
+    /**
+     * Parse the named attribute into an optional {@link LocalDateTime} value,
+     * see {@link XmlFunctions#dateTimeValue(org.w3c.dom.Attr)}.
+     *
+     * @param name the qualified name
+     * @return the parsed value, or an empty optional if there is no such attribute
+     * @throws java.time.format.DateTimeParseException if the value cannot be parsed
+     */
+    public Optional<LocalDateTime> dateTimeValue(String name) {
+        return attributeValue(name, Lexical::parseDateTime);
+    }
+
+    /**
+     * Parse the named attribute into an optional {@link OffsetDateTime} value,
+     * see {@link XmlFunctions#offsetDateTimeValue(org.w3c.dom.Attr)}.
+     *
+     * @param name the qualified name
+     * @return the parsed value, or an empty optional if there is no such attribute
+     * @throws java.time.format.DateTimeParseException if the value cannot be parsed
+     */
+    public Optional<OffsetDateTime> offsetDateTimeValue(String name) {
+        return attributeValue(name, Lexical::parseOffsetDateTime);
+    }
+
+    /**
+     * Parse the named attribute into an optional {@link ZonedDateTime} value,
+     * see {@link XmlFunctions#zonedDateTimeValue(org.w3c.dom.Attr)}.
+     *
+     * @param name the qualified name
+     * @return the parsed value, or an empty optional if there is no such attribute
+     * @throws java.time.format.DateTimeParseException if the value cannot be parsed
+     */
+    public Optional<ZonedDateTime> zonedDateTimeValue(String name) {
+        return attributeValue(name, Lexical::parseZonedDateTime);
+    }
+
+    /**
+     * Parse the named attribute into an optional {@code xs:boolean} value,
+     * see {@link XmlFunctions#booleanValue(org.w3c.dom.Attr)}.
+     *
+     * @param name the qualified name
+     * @return the parsed value, or an empty optional if there is no such attribute
+     * @throws IllegalArgumentException if the value is not a valid {@code xs:boolean} literal
+     */
+    public Optional<Boolean> booleanValue(String name) {
+        return attributeValue(name, Lexical::parseBoolean);
+    }
+
+    // the single text child, or -1 if the content is made up otherwise
+    private int singleText() {
+        int child = index + 1;
+        int end = document.end(index);
+        return child + 1 == end && !document.isElement(child) ? child : -1;
+    }
+
+    /**
+     * The text content of the element: the concatenation of all descendant
+     * text, like {@link org.w3c.dom.Node#getTextContent()}.
+     *
+     * @return the text content; empty if there is none
+     */
+    public String textContent() {
+        int single = singleText();
+        if (single >= 0) {
+            return document.string(document.textStart(single), document.textEnd(single));
+        }
+        int end = document.end(index);
+        var sb = new StringBuilder();
+        for (int i = index + 1; i < end; i++) {
+            if (!document.isElement(i)) {
+                document.appendText(sb, i);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The trimmed text content of the element, see {@link XmlFunctions#text(org.w3c.dom.Element)}.
+     *
+     * @return the trimmed text content
+     */
+    public String text() {
+        return textContent().trim();
+    }
+
+    /**
+     * Parse the trimmed text content with the given parser.
+     *
+     * @param parser the parser
+     * @param <T>    the type of the parsed value
+     * @return the parsed value
+     */
+    public <T> T content(Function<? super String, ? extends T> parser) {
+        return parser.apply(text());
+    }
+
+    /**
+     * Parse the trimmed text content into an {@code int} value; allocates
+     * nothing if the element contains a single text node.
+     *
+     * @return the parsed value
+     * @throws NumberFormatException if the trimmed text is not a valid {@code int}
+     */
+    public int intContent() {
+        int single = singleText();
+        return single >= 0
+                ? Lexical.parseIntTrimmed(document.chars(), document.textStart(single), document.textEnd(single))
+                : Lexical.parseIntTrimmed(textContent());
+    }
+
+    /**
+     * Parse the trimmed text content into a {@code long} value; allocates
+     * nothing if the element contains a single text node.
+     *
+     * @return the parsed value
+     * @throws NumberFormatException if the trimmed text is not a valid {@code long}
+     */
+    public long longContent() {
+        int single = singleText();
+        return single >= 0
+                ? Lexical.parseLongTrimmed(document.chars(), document.textStart(single), document.textEnd(single))
+                : Lexical.parseLongTrimmed(textContent());
+    }
+
+    /**
+     * Parse the trimmed text content into a {@code double} value.
+     *
+     * @return the parsed value
+     * @throws NumberFormatException if the trimmed text is not a valid {@code double}
+     */
+    public double doubleContent() {
+        return Lexical.parseDoubleTrimmed(text());
+    }
+
+    /**
+     * Parse the trimmed text content into a {@link BigDecimal} value.
+     *
+     * @return the parsed value
+     * @throws NumberFormatException if the trimmed text is not a valid {@link BigDecimal}
+     */
+    public BigDecimal decimalContent() {
+        return new BigDecimal(text());
+    }
+
+    /**
+     * Parse the trimmed text content into a {@link LocalDate} value.
+     *
+     * @return the parsed value
+     * @throws java.time.format.DateTimeParseException if the text cannot be parsed
+     */
+    public LocalDate dateContent() {
+        return Lexical.parseDate(text());
+    }
+
+    /**
+     * Parse the trimmed text content into a {@link LocalDateTime} value.
+     *
+     * @return the parsed value
+     * @throws java.time.format.DateTimeParseException if the text cannot be parsed
+     */
+    public LocalDateTime dateTimeContent() {
+        return Lexical.parseDateTime(text());
+    }
+
+    /**
+     * Parse the trimmed text content into an {@link OffsetDateTime} value.
+     *
+     * @return the parsed value
+     * @throws java.time.format.DateTimeParseException if the text cannot be parsed
+     */
+    public OffsetDateTime offsetDateTimeContent() {
+        return Lexical.parseOffsetDateTime(text());
+    }
+
+    /**
+     * Parse the trimmed text content into a {@link ZonedDateTime} value.
+     *
+     * @return the parsed value
+     * @throws java.time.format.DateTimeParseException if the text cannot be parsed
+     */
+    public ZonedDateTime zonedDateTimeContent() {
+        return Lexical.parseZonedDateTime(text());
+    }
+
+    /**
+     * Parse the trimmed text content into an {@code xs:boolean} value.
+     *
+     * @return the parsed value
+     * @throws IllegalArgumentException if the text is not a valid {@code xs:boolean} literal
+     */
+    public boolean booleanContent() {
+        return Lexical.parseBoolean(text());
+    }
+
+    @Override
+    public String toString() {
+        return "CompactElement[" + name() + "@" + index + "]";
+    }
+}
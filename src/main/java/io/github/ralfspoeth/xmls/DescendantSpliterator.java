@@ -0,0 +1,197 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * A spliterator over the descendant {@link Element}s of a node in document
+ * order, optionally restricted to those accepted by a filter.
+ *
+ * <p>The traversal follows the {@link Node#getFirstChild() first child},
+ * {@link Node#getNextSibling() next sibling} and
+ * {@link Node#getParentNode() parent} pointers of the tree. Each step takes
+ * constant amortized time and allocates nothing, and nodes after the last
+ * element consumed are never touched, so short-circuiting operations such as
+ * {@code findFirst()} stop early.</p>
+ *
+ * <p>A spliterator covers a range of sibling subtrees, from {@code top},
+ * the subtree currently traversed, to {@code last}. Splitting hands off the
+ * first half of the range of siblings; a range made up of a single subtree
+ * not yet entered is split into its root and the range of its children.
+ * The size estimate starts from the number of children of the traversed
+ * node and is divided among the parts in proportion to the number of
+ * siblings they cover. The range of the children of the traversed node is
+ * bounded and counted only once a split or an estimate is asked for, so
+ * that a sequential traversal never looks past the element it returns.
+ * Splitting reads sibling pointers only and does not touch the
+ * {@link org.w3c.dom.NodeList}s of the DOM, which are unsafe for concurrent
+ * use.</p>
+ */
+final class DescendantSpliterator implements Spliterator<Element> {
+
+    // average number of nodes per child assumed for the initial estimate
+    private static final long NODES_PER_CHILD = 16;
+
+    private final Predicate<? super Element> filter;
+    // the node whose children are traversed, until last, count and estimate are computed
+    private @Nullable Node root;
+    // the root of the subtree currently traversed
+    private @Nullable Node top;
+    // the last sibling subtree covered; null for all remaining siblings while root is set
+    private @Nullable Node last;
+    // the next node to examine, or null if the traversal is complete
+    private @Nullable Node next;
+    // the number of sibling subtrees from top to last
+    private int count;
+    private long estimate;
+
+    /**
+     * Create a spliterator over the descendants of the given node.
+     *
+     * @param root   the node whose descendants are traversed; not included itself
+     * @param filter the elements to report
+     */
+    DescendantSpliterator(Node root, Predicate<? super Element> filter) {
+        this(filter, root.getFirstChild(), null, 0, 0);
+        this.root = root;
+    }
+
+    private DescendantSpliterator(
+            Predicate<? super Element> filter, @Nullable Node top, @Nullable Node last, int count, long estimate
+    ) {
+        this.filter = filter;
+        this.top = top;
+        this.last = last;
+        this.next = top;
+        this.count = count;
+        this.estimate = estimate;
+    }
+
+    // bound and count the range of the children of root, from top on
+    private void measure() {
+        var r = root;
+        if (r != null) {
+            root = null;
+            if (top != null) {
+                last = r.getLastChild();
+                count = countSiblings();
+                estimate = count * NODES_PER_CHILD;
+            }
+        }
+    }
+
+    private int countSiblings() {
+        int n = 1;
+        for (var s = top; s != last && s != null; s = s.getNextSibling()) {
+            n++;
+        }
+        return n;
+    }
+
+    // the node following the given one in document order within the range, if any
+    private @Nullable Node following(Node n) {
+        var child = n.getFirstChild();
+        if (child != null) {
+            return child;
+        }
+        while (n != top) {
+            var sibling = n.getNextSibling();
+            if (sibling != null) {
+                return sibling;
+            }
+            n = n.getParentNode();
+        }
+        if (n == last) {
+            return null;
+        }
+        top = n.getNextSibling();
+        if (count > 0) {
+            count--;
+        }
+        return top;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Element> action) {
+        while (next != null) {
+            var n = next;
+            next = following(n);
+            if (n instanceof Element e && filter.test(e)) {
+                action.accept(e);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Element> action) {
+        var n = next;
+        next = null;
+        while (n != null) {
+            if (n instanceof Element e && filter.test(e)) {
+                action.accept(e);
+            }
+            n = following(n);
+        }
+    }
+
+    @Override
+    public @Nullable Spliterator<Element> trySplit() {
+        measure();
+        if (next == null || top == null) {
+            return null;
+        }
+        if (top == last) {
+            // a single subtree: hand off its root, keep its children
+            if (next != top || top.getFirstChild() == null) {
+                return null;
+            }
+            var root = top;
+            var prefix = root instanceof Element e && filter.test(e)
+                    ? Stream.of(e).spliterator()
+                    : Spliterators.<Element>emptySpliterator();
+            top = root.getFirstChild();
+            last = root.getLastChild();
+            next = top;
+            count = countSiblings();
+            estimate = Math.max(estimate - 1, count);
+            return prefix;
+        }
+        // hand off the first half of the siblings, including the one entered
+        int half = count / 2;
+        var mid = top;
+        for (int i = 1; i < half; i++) {
+            mid = mid.getNextSibling();
+        }
+        long prefixEstimate = Math.max(1, estimate / count * half);
+        var prefix = new DescendantSpliterator(filter, top, mid, half, prefixEstimate);
+        prefix.next = next;
+        top = mid.getNextSibling();
+        next = top;
+        count -= half;
+        estimate = Math.max(1, estimate - prefixEstimate);
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (next == null) {
+            return 0;
+        }
+        measure();
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,228 @@
+package io.github.ralfspoeth.xmls;
+
+import org.w3c.dom.Document;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A cache of documents parsed from files, for files which are read
+ * over and over again, such as configuration and reference data.
+ *
+ * <p>Entries are keyed by the absolute, normalized path of a file and
+ * validated against its last-modified time and size on every
+ * {@link #get(Path) get}: a file which has changed since it was parsed is
+ * parsed again. The cache holds at most a given number of entries and,
+ * as an estimate of the memory retained, documents parsed from at most a
+ * given number of source bytes; when either bound is exceeded, the least
+ * recently used entries are evicted.</p>
+ *
+ * <p>Each file is parsed once even if many threads ask for it at the same
+ * time: the first thread parses while the others wait for its result. A
+ * failure is reported to all waiting threads and not cached. Documents are
+ * parsed {@linkplain ParseOptions#frozen() frozen}, so that they may be read
+ * concurrently through {@link XmlStreams} and {@link XmlFunctions}; they must
+ * not be modified.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public final class DocumentCache {
+
+    /**
+     * Cache statistics since the cache was created.
+     *
+     * @param hits      the number of requests served from the cache,
+     *                  including those which waited for another thread to parse
+     * @param misses    the number of requests which parsed a file
+     * @param evictions the number of entries evicted to meet the bounds
+     */
+    public record Stats(long hits, long misses, long evictions) {
+
+        /**
+         * The fraction of requests served from the cache.
+         *
+         * @return the hit rate, or {@code 0} if there have been no requests
+         */
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    private record Version(FileTime lastModified, long size) {}
+
+    private record Entry(Version version, CompletableFuture<Document> document) {}
+
+    private final Function<Path, Document> parser;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LruCache<Path, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create an empty cache.
+     *
+     * @param maxEntries     the maximum number of documents held; must be positive
+     * @param maxSourceBytes the maximum total size of the files of the
+     *                       documents held; must be positive
+     * @param options        the options used for parsing; documents are
+     *                       always parsed {@linkplain ParseOptions#frozen() frozen}
+     * @throws IllegalArgumentException if a bound is not positive
+     */
+    public DocumentCache(int maxEntries, long maxSourceBytes, ParseOptions options) {
+        this(maxEntries, maxSourceBytes, parser(options.withFrozen(true)));
+    }
+
+    private static Function<Path, Document> parser(ParseOptions options) {
+        return path -> Xml.parse(path, options);
+    }
+
+    /**
+     * Create an empty cache which parses files with the given function.
+     *
+     * @param maxEntries     the maximum number of documents held; must be positive
+     * @param maxSourceBytes the maximum total size of the files of the
+     *                       documents held; must be positive
+     * @param parser         the function parsing a file
+     */
+    DocumentCache(int maxEntries, long maxSourceBytes, Function<Path, Document> parser) {
+        this.parser = parser;
+        this.entries = new LruCache<>(maxEntries, maxSourceBytes, e -> e.version().size());
+    }
+
+    /**
+     * Create an empty cache bounded by the number of entries only, which
+     * parses with {@link ParseOptions#DEFAULT}.
+     *
+     * @param maxEntries the maximum number of documents held; must be positive
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    public DocumentCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, ParseOptions.DEFAULT);
+    }
+
+    /**
+     * The document parsed from the given file, from the cache if the file
+     * has not changed since it was parsed.
+     *
+     * @param path the file
+     * @return the document; shared with other callers and not to be modified
+     * @throws XmlException if reading or parsing fails
+     */
+    public Document get(Path path) {
+        var key = path.toAbsolutePath().normalize();
+        var version = version(key);
+        Entry entry;
+        boolean load = false;
+        lock.lock();
+        try {
+            entry = entries.get(key);
+            if (entry == null || !entry.version().equals(version)) {
+                entry = new Entry(version, new CompletableFuture<>());
+                evictions.add(entries.put(key, entry));
+                load = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (load) {
+            misses.increment();
+            load(key, entry);
+        } else {
+            hits.increment();
+        }
+        try {
+            return entry.document().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof XmlException x) {
+                throw x;
+            }
+            throw new XmlException("Failed to parse " + path, e.getCause());
+        }
+    }
+
+    private static Version version(Path path) {
+        try {
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Version(attributes.lastModifiedTime(), attributes.size());
+        } catch (IOException e) {
+            throw new XmlException("Failed to read " + path, e);
+        }
+    }
+
+    // completes the entry whatever happens, lest waiting threads block forever
+    private void load(Path path, Entry entry) {
+        try {
+            entry.document().complete(parser.apply(path));
+        } catch (Throwable t) {
+            lock.lock();
+            try {
+                entries.remove(path, entry);
+            } finally {
+                lock.unlock();
+            }
+            entry.document().completeExceptionally(t);
+            if (t instanceof Error e) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Remove the document parsed from the given file, if any.
+     *
+     * @param path the file
+     */
+    public void invalidate(Path path) {
+        lock.lock();
+        try {
+            entries.remove(path.toAbsolutePath().normalize());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all documents.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of documents held, including those still being parsed.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The statistics of the cache.
+     *
+     * @return a snapshot of the statistics
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum());
+    }
+}
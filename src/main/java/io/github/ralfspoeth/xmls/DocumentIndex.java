@@ -0,0 +1,352 @@
+package io.github.ralfspoeth.xmls;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An index of the elements of a document by name and by the values of
+ * selected attributes, for documents queried over and over again.
+ *
+ * <p>The index is built in one pass over the document, which may run in
+ * parallel. It holds the elements in document order, and for each
+ * qualified name, each pair of namespace URI and local name, and each value
+ * of an indexed attribute the ascending positions of the matching elements.
+ * Since the descendants of an element occupy a contiguous range of
+ * positions, a query scoped to an element finds the bounds of its matches
+ * by binary search. Queries therefore take time proportional to the number
+ * of results rather than to the size of the document, and return the same
+ * elements in the same order as the corresponding methods of
+ * {@link XmlStreams}. Queries with a wildcard namespace URI or local name
+ * other than {@code ("*", "*")} scan the scope instead.</p>
+ *
+ * <p>The index reflects the document at the time it was built; it must
+ * not be modified afterwards. Instances are immutable and thread-safe, and
+ * their streams split evenly for parallel processing.</p>
+ */
+public final class DocumentIndex {
+
+    private record Name(String namespace, String localName) {}
+
+    private static final int[] NONE = new int[0];
+
+    private final Element[] elements;
+    // the position after the last descendant of the element at each position
+    private final int[] ends;
+    private final Map<Element, Integer> positions;
+    private final Map<String, int[]> byName;
+    private final Map<Name, int[]> byNamespace;
+    private final Map<String, Map<String, int[]>> byAttribute;
+
+    private DocumentIndex(Builder builder) {
+        this.elements = builder.elements.toArray(Element[]::new);
+        this.ends = new int[elements.length];
+        this.positions = new IdentityHashMap<>(elements.length);
+        computeEnds();
+        this.byName = freeze(builder.byName);
+        this.byNamespace = freeze(builder.byNamespace);
+        var attributes = new HashMap<String, Map<String, int[]>>();
+        builder.byAttribute.forEach((name, values) -> attributes.put(name, freeze(values)));
+        this.byAttribute = Map.copyOf(attributes);
+    }
+
+    private static <K> Map<K, int[]> freeze(Map<K, Positions> map) {
+        var frozen = new HashMap<K, int[]>(map.size() * 4 / 3 + 1);
+        map.forEach((k, p) -> frozen.put(k, p.toArray()));
+        return frozen;
+    }
+
+    // document order puts each element right after its ancestors
+    private void computeEnds() {
+        var open = new ArrayDeque<Integer>();
+        for (int i = 0; i < elements.length; i++) {
+            positions.put(elements[i], i);
+            var parent = elements[i].getParentNode();
+            // the parent may be an entity reference left unexpanded
+            while (parent != null && parent.getNodeType() != Node.ELEMENT_NODE) {
+                parent = parent.getParentNode();
+            }
+            while (!open.isEmpty() && elements[open.peek()] != parent) {
+                ends[open.pop()] = i;
+            }
+            open.push(i);
+        }
+        while (!open.isEmpty()) {
+            ends[open.pop()] = elements.length;
+        }
+    }
+
+    /**
+     * Index the elements of the given document by name and by the values
+     * of the given attributes.
+     *
+     * @param doc                the document
+     * @param indexedAttributes  the qualified names of the attributes whose values are indexed
+     * @return the index
+     */
+    public static DocumentIndex of(Document doc, String... indexedAttributes) {
+        return of(doc, List.of(indexedAttributes), false);
+    }
+
+    /**
+     * Index the elements of the given document by name and by the values
+     * of the given attributes, optionally traversing the document in
+     * parallel. Parallel traversal requires a document which is safe for
+     * concurrent reads, see {@link Xml#freeze(Document)}.
+     *
+     * @param doc               the document
+     * @param indexedAttributes the qualified names of the attributes whose values are indexed
+     * @param parallel          whether to traverse the document in parallel
+     * @return the index
+     */
+    public static DocumentIndex of(Document doc, Collection<String> indexedAttributes, boolean parallel) {
+        var attributes = Set.copyOf(indexedAttributes).toArray(String[]::new);
+        var stream = XmlStreams.allElements(doc);
+        return (parallel ? stream.parallel() : stream).collect(Collector.of(
+                () -> new Builder(attributes),
+                Builder::add,
+                Builder::combine,
+                DocumentIndex::new
+        ));
+    }
+
+    /**
+     * The number of elements in the index.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return elements.length;
+    }
+
+    /**
+     * All elements of the document in document order, like
+     * {@link XmlStreams#allElements(Document)}.
+     *
+     * @return a stream of all elements
+     */
+    public Stream<Element> allElements() {
+        return Arrays.stream(elements);
+    }
+
+    /**
+     * The elements of the document with the given qualified name, or all
+     * elements if the name is {@code "*"}.
+     *
+     * @param name the qualified name
+     * @return a stream of the matching elements in document order
+     */
+    public Stream<Element> elements(String name) {
+        return name.equals("*") ? allElements() : select(byName.getOrDefault(name, NONE), 0, elements.length);
+    }
+
+    /**
+     * The descendants of the given element, like
+     * {@link XmlStreams#descendantElements(Element)}.
+     *
+     * @param element an element of the indexed document
+     * @return a stream of the descendant elements in document order
+     * @throws IllegalArgumentException if the element is not in the index
+     */
+    public Stream<Element> descendantElements(Element element) {
+        int p = position(element);
+        return Arrays.stream(elements, p + 1, ends[p]);
+    }
+
+    /**
+     * The descendants of the given element with the given qualified name,
+     * like {@link XmlStreams#descendantElements(Element, String)}.
+     *
+     * @param element an element of the indexed document
+     * @param name    the qualified name; {@code "*"} matches all
+     * @return a stream of the matching descendant elements in document order
+     * @throws IllegalArgumentException if the element is not in the index
+     */
+    public Stream<Element> descendantElements(Element element, String name) {
+        if (name.equals("*")) {
+            return descendantElements(element);
+        }
+        int p = position(element);
+        return select(byName.getOrDefault(name, NONE), p + 1, ends[p]);
+    }
+
+    /**
+     * The descendants of the given element with the given namespace URI and
+     * local name, like {@link XmlStreams#descendantElements(Element, String, String)}.
+     *
+     * @param element   an element of the indexed document
+     * @param ns        the namespace URI; the empty string for none, {@code "*"} for any
+     * @param localName the local name; {@code "*"} for any
+     * @return a stream of the matching descendant elements in document order
+     * @throws IllegalArgumentException if the element is not in the index
+     */
+    public Stream<Element> descendantElements(Element element, String ns, String localName) {
+        if (ns.equals("*") && localName.equals("*")) {
+            return descendantElements(element);
+        }
+        int p = position(element);
+        if (ns.equals("*") || localName.equals("*")) {
+            return Arrays.stream(elements, p + 1, ends[p]).filter(NameMatcher.of(ns, localName)::matches);
+        }
+        return select(byNamespace.getOrDefault(new Name(ns, localName), NONE), p + 1, ends[p]);
+    }
+
+    /**
+     * The elements of the document whose indexed attribute has the given
+     * value, such as the element with a given {@code id}.
+     *
+     * @param attribute the qualified name of an indexed attribute
+     * @param value     the value
+     * @return a stream of the matching elements in document order
+     * @throws IllegalArgumentException if the attribute is not indexed
+     */
+    public Stream<Element> withAttribute(String attribute, String value) {
+        var values = byAttribute.get(attribute);
+        if (values == null) {
+            throw new IllegalArgumentException("attribute not indexed: " + attribute);
+        }
+        return select(values.getOrDefault(value, NONE), 0, elements.length);
+    }
+
+    /**
+     * The descendants of the given element whose indexed attribute has the
+     * given value.
+     *
+     * @param element   an element of the indexed document
+     * @param attribute the qualified name of an indexed attribute
+     * @param value     the value
+     * @return a stream of the matching descendant elements in document order
+     * @throws IllegalArgumentException if the element is not in the index or
+     *                                  the attribute is not indexed
+     */
+    public Stream<Element> withAttribute(Element element, String attribute, String value) {
+        var values = byAttribute.get(attribute);
+        if (values == null) {
+            throw new IllegalArgumentException("attribute not indexed: " + attribute);
+        }
+        int p = position(element);
+        return select(values.getOrDefault(value, NONE), p + 1, ends[p]);
+    }
+
+    private int position(Element element) {
+        var p = positions.get(element);
+        if (p == null) {
+            throw new IllegalArgumentException("element not in index: " + element.getTagName());
+        }
+        return p;
+    }
+
+    // the elements at those of the ascending positions within [from, to)
+    private Stream<Element> select(int[] matches, int from, int to) {
+        int lo = lowerBound(matches, from);
+        int hi = lowerBound(matches, to);
+        return IntStream.range(lo, hi).mapToObj(i -> elements[matches[i]]);
+    }
+
+    // the index of the first value not less than the key
+    private static int lowerBound(int[] a, int key) {
+        int lo = 0;
+        int hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * A growable list of ascending positions.
+     */
+    private static final class Positions {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = position;
+        }
+
+        void addAll(Positions other, int offset) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(2 * values.length, size + other.size));
+            }
+            for (int i = 0; i < other.size; i++) {
+                values[size++] = other.values[i] + offset;
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Accumulates the elements of a contiguous part of the document, with
+     * positions relative to the start of that part.
+     */
+    private static final class Builder {
+        private final String[] attributes;
+        private final List<Element> elements = new ArrayList<>();
+        private final Map<String, Positions> byName = new HashMap<>();
+        private final Map<Name, Positions> byNamespace = new HashMap<>();
+        private final Map<String, Map<String, Positions>> byAttribute = new HashMap<>();
+
+        Builder(String[] attributes) {
+            this.attributes = attributes;
+            for (var a : attributes) {
+                byAttribute.put(a, new HashMap<>());
+            }
+        }
+
+        void add(Element e) {
+            int position = elements.size();
+            elements.add(e);
+            byName.computeIfAbsent(e.getTagName(), k -> new Positions()).add(position);
+            // like NameMatcher, an element without a local name, as in a
+            // document which is not namespace-aware, matches no local name but "*"
+            var local = e.getLocalName();
+            if (local != null) {
+                var key = new Name(StaxSupport.namespace(e.getNamespaceURI()), local);
+                byNamespace.computeIfAbsent(key, k -> new Positions()).add(position);
+            }
+            for (var a : attributes) {
+                var attr = e.getAttributeNode(a);
+                if (attr != null) {
+                    byAttribute.get(a).computeIfAbsent(attr.getValue(), k -> new Positions()).add(position);
+                }
+            }
+        }
+
+        Builder combine(Builder right) {
+            int offset = elements.size();
+            elements.addAll(right.elements);
+            merge(byName, right.byName, offset);
+            merge(byNamespace, right.byNamespace, offset);
+            byAttribute.forEach((a, values) -> merge(values, right.byAttribute.get(a), offset));
+            return this;
+        }
+
+        private static <K> void merge(Map<K, Positions> left, Map<K, Positions> right, int offset) {
+            right.forEach((k, p) -> left.computeIfAbsent(k, x -> new Positions()).addAll(p, offset));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Element;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Primitive spliterators over a field of the elements reported by another
+ * spliterator, see {@link Columns} for fields; elements without a value
+ * are skipped.
+ *
+ * <p>The spliterator passes itself to the source as the consumer of the
+ * next element, so that advancing allocates nothing but what the field
+ * allocates for the text of the value. It splits whenever its source
+ * splits. Since elements may be skipped, the size of the source is only an
+ * estimate.</p>
+ */
+abstract class FieldSpliterator implements Consumer<Element> {
+
+    final Spliterator<? extends Element> source;
+    final Function<? super Element, @Nullable String> field;
+    // the text of the element last consumed, or null if it has none
+    private @Nullable String text;
+
+    private FieldSpliterator(Spliterator<? extends Element> source, Function<? super Element, @Nullable String> field) {
+        this.source = source;
+        this.field = field;
+    }
+
+    @Override
+    public void accept(Element e) {
+        text = field.apply(e);
+    }
+
+    // the text of the next element with a value, or null if there is none
+    @Nullable String next() {
+        while (source.tryAdvance(this)) {
+            var t = text;
+            if (t != null) {
+                text = null;
+                return t;
+            }
+        }
+        return null;
+    }
+
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    public int characteristics() {
+        return source.characteristics() & (Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.CONCURRENT);
+    }
+
+    static final class Ints extends FieldSpliterator implements Spliterator.OfInt {
+
+        Ints(Spliterator<? extends Element> source, Function<? super Element, @Nullable String> field) {
+            super(source, field);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            var t = next();
+            if (t == null) {
+                return false;
+            }
+            action.accept(Lexical.parseIntTrimmed(t));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            source.forEachRemaining(e -> {
+                var t = field.apply(e);
+                if (t != null) {
+                    action.accept(Lexical.parseIntTrimmed(t));
+                }
+            });
+        }
+
+        @Override
+        public Spliterator.@Nullable OfInt trySplit() {
+            var prefix = source.trySplit();
+            return prefix == null ? null : new Ints(prefix, field);
+        }
+    }
+
+    static final class Longs extends FieldSpliterator implements Spliterator.OfLong {
+
+        Longs(Spliterator<? extends Element> source, Function<? super Element, @Nullable String> field) {
+            super(source, field);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            var t = next();
+            if (t == null) {
+                return false;
+            }
+            action.accept(Lexical.parseLongTrimmed(t));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            source.forEachRemaining(e -> {
+                var t = field.apply(e);
+                if (t != null) {
+                    action.accept(Lexical.parseLongTrimmed(t));
+                }
+            });
+        }
+
+        @Override
+        public Spliterator.@Nullable OfLong trySplit() {
+            var prefix = source.trySplit();
+            return prefix == null ? null : new Longs(prefix, field);
+        }
+    }
+
+    static final class Doubles extends FieldSpliterator implements Spliterator.OfDouble {
+
+        Doubles(Spliterator<? extends Element> source, Function<? super Element, @Nullable String> field) {
+            super(source, field);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            var t = next();
+            if (t == null) {
+                return false;
+            }
+            action.accept(Lexical.parseDoubleTrimmed(t));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            source.forEachRemaining(e -> {
+                var t = field.apply(e);
+                if (t != null) {
+                    action.accept(Lexical.parseDoubleTrimmed(t));
+                }
+            });
+        }
+
+        @Override
+        public Spliterator.@Nullable OfDouble trySplit() {
+            var prefix = source.trySplit();
+            return prefix == null ? null : new Doubles(prefix, field);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * A spliterator over the index range of an indexed collection such as a
+ * {@link org.w3c.dom.NodeList} or a {@link org.w3c.dom.NamedNodeMap}.
+ *
+ * <p>Splitting halves the index range. The DOM collections of the JDK keep
+ * an internal cursor which is updated by {@code item(int)}, so they must
+ * not be accessed from several threads at once. The first split therefore
+ * copies the remaining items into an array, in one sequential pass; all
+ * spliterators created from then on share that array and split in constant
+ * time. A spliterator which is never split, i.e. one used by a sequential
+ * stream, reads the collection directly and allocates nothing.</p>
+ *
+ * @param <T> the type of the items
+ */
+final class IndexedSpliterator<T> implements Spliterator<T> {
+
+    private static final int CHARACTERISTICS = ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+
+    private final IntFunction<? extends T> item;
+    private Object @Nullable [] snapshot;
+    private int index;
+    private final int fence;
+
+    /**
+     * Create a spliterator over the items at indices zero (inclusive) to
+     * {@code length} (exclusive).
+     *
+     * @param item   returns the item at the given index
+     * @param length the number of items
+     */
+    IndexedSpliterator(IntFunction<? extends T> item, int length) {
+        this(item, null, 0, length);
+    }
+
+    /**
+     * Create a spliterator over the first {@code length} items of the given array.
+     *
+     * @param items  the items
+     * @param length the number of items
+     * @param <T>    the type of the items
+     * @return a new spliterator
+     */
+    @SuppressWarnings("unchecked")
+    static <T> IndexedSpliterator<T> of(Object[] items, int length) {
+        return new IndexedSpliterator<>(i -> (T) items[i], items, 0, length);
+    }
+
+    private IndexedSpliterator(IntFunction<? extends T> item, Object @Nullable [] snapshot, int index, int fence) {
+        this.item = item;
+        this.snapshot = snapshot;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T get(int i) {
+        return snapshot == null ? item.apply(i) : (T) snapshot[i];
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (index < fence) {
+            action.accept(get(index++));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        for (int i = index; i < fence; i++) {
+            action.accept(get(i));
+        }
+        index = fence;
+    }
+
+    @Override
+    public @Nullable Spliterator<T> trySplit() {
+        int mid = (index + fence) >>> 1;
+        if (mid <= index) {
+            return null;
+        }
+        if (snapshot == null) {
+            var a = new Object[fence];
+            for (int i = index; i < fence; i++) {
+                a[i] = item.apply(i);
+            }
+            snapshot = a;
+        }
+        var prefix = new IndexedSpliterator<T>(item, snapshot, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+}
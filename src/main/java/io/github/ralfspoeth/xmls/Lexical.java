@@ -0,0 +1,376 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parsers converting the lexical representation of XML values straight from
+ * a {@link CharSequence}, without intermediate copies.
+ *
+ * <p>The {@code *Trimmed} methods ignore leading and trailing characters
+ * up to and including {@code ' '}, with the same result as parsing the
+ * {@linkplain String#trim() trimmed} string.</p>
+ *
+ * <p>The date and time parsers handle the fixed layouts of {@code xs:date}
+ * and {@code xs:dateTime} &mdash; four-digit years, seconds with up to nine
+ * fractional digits, and offsets {@code Z} or {@code ±hh:mm} &mdash; by hand
+ * and fall back to the ISO formatters of {@link java.time.format.DateTimeFormatter}
+ * for any other input, so that they accept and reject exactly what
+ * {@link LocalDate#parse(CharSequence)} and friends accept and reject.
+ * Offsets at multiples of fifteen minutes and zone IDs are cached.</p>
+ */
+final class Lexical {
+
+    // offsets from -18:00 to +18:00 in steps of fifteen minutes
+    private static final ZoneOffset[] QUARTER_HOUR_OFFSETS = new ZoneOffset[145];
+
+    static {
+        for (int i = 0; i < QUARTER_HOUR_OFFSETS.length; i++) {
+            QUARTER_HOUR_OFFSETS[i] = ZoneOffset.ofTotalSeconds((i - 72) * 15 * 60);
+        }
+    }
+
+    // bounds the cache against arbitrary IDs; the set of region IDs is finite
+    private static final int MAX_CACHED_ZONES = 1024;
+    private static final ConcurrentMap<String, ZoneId> ZONES = new ConcurrentHashMap<>();
+
+    // prevent instantiation
+    private Lexical() {}
+
+    /**
+     * The index of the first character of the trimmed range.
+     *
+     * @param s the characters
+     * @return the first index whose character is greater than {@code ' '},
+     * or {@code s.length()}
+     */
+    static int trimStart(CharSequence s) {
+        return trimStart(s, 0, s.length());
+    }
+
+    /**
+     * The index of the first character of the trimmed part of a range.
+     *
+     * @param s     the characters
+     * @param start the start of the range, inclusive
+     * @param end   the end of the range, exclusive
+     * @return the first index in the range whose character is greater than
+     * {@code ' '}, or {@code end}
+     */
+    static int trimStart(CharSequence s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * The index after the last character of the trimmed range.
+     *
+     * @param s     the characters
+     * @param start the start of the trimmed range, see {@link #trimStart(CharSequence)}
+     * @return one plus the last index whose character is greater than {@code ' '},
+     * or {@code start}
+     */
+    static int trimEnd(CharSequence s, int start) {
+        return trimEnd(s, start, s.length());
+    }
+
+    /**
+     * The index after the last character of the trimmed part of a range.
+     *
+     * @param s     the characters
+     * @param start the start of the trimmed range, see {@link #trimStart(CharSequence, int, int)}
+     * @param end   the end of the range, exclusive
+     * @return one plus the last index in the range whose character is greater
+     * than {@code ' '}, or {@code start}
+     */
+    static int trimEnd(CharSequence s, int start, int end) {
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Parse the trimmed characters as a decimal {@code int}.
+     *
+     * @param s the characters
+     * @return the value
+     * @throws NumberFormatException if the trimmed characters are not a valid {@code int}
+     */
+    static int parseIntTrimmed(CharSequence s) {
+        return parseIntTrimmed(s, 0, s.length());
+    }
+
+    /**
+     * Parse the trimmed characters of a range as a decimal {@code int}.
+     *
+     * @param s     the characters
+     * @param start the start of the range, inclusive
+     * @param end   the end of the range, exclusive
+     * @return the value
+     * @throws NumberFormatException if the trimmed characters are not a valid {@code int}
+     */
+    static int parseIntTrimmed(CharSequence s, int start, int end) {
+        int first = trimStart(s, start, end);
+        return Integer.parseInt(s, first, trimEnd(s, first, end), 10);
+    }
+
+    /**
+     * Parse the trimmed characters as a decimal {@code long}.
+     *
+     * @param s the characters
+     * @return the value
+     * @throws NumberFormatException if the trimmed characters are not a valid {@code long}
+     */
+    static long parseLongTrimmed(CharSequence s) {
+        return parseLongTrimmed(s, 0, s.length());
+    }
+
+    /**
+     * Parse the trimmed characters of a range as a decimal {@code long}.
+     *
+     * @param s     the characters
+     * @param start the start of the range, inclusive
+     * @param end   the end of the range, exclusive
+     * @return the value
+     * @throws NumberFormatException if the trimmed characters are not a valid {@code long}
+     */
+    static long parseLongTrimmed(CharSequence s, int start, int end) {
+        int first = trimStart(s, start, end);
+        return Long.parseLong(s, first, trimEnd(s, first, end), 10);
+    }
+
+    /**
+     * Parse the trimmed characters as a {@code double}.
+     *
+     * @param s the characters
+     * @return the value
+     * @throws NumberFormatException if the trimmed characters are not a valid {@code double}
+     */
+    static double parseDoubleTrimmed(CharSequence s) {
+        // parseDouble ignores the same leading and trailing characters
+        return Double.parseDouble(s.toString());
+    }
+
+    /**
+     * Parse the characters as an {@code xs:boolean}: {@code "true"} and
+     * {@code "1"} map to {@code true}, {@code "false"} and {@code "0"} to
+     * {@code false}.
+     *
+     * @param s the characters
+     * @return the value
+     * @throws IllegalArgumentException if the characters are none of the four literals
+     */
+    static boolean parseBoolean(String s) {
+        return switch (s) {
+            case "true", "1" -> true;
+            case "false", "0" -> false;
+            default -> throw new IllegalArgumentException("Not a valid xs:boolean literal: " + s);
+        };
+    }
+
+    // the value of the decimal digits from start to end, or -1 if there is a non-digit
+    private static int digits(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    // yyyy-MM-dd at index 0, or null
+    private static @Nullable LocalDate fastDate(String s) {
+        if (s.length() < 10 || s.charAt(4) != '-' || s.charAt(7) != '-') {
+            return null;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 7);
+        int day = digits(s, 8, 10);
+        return year < 0 || month < 0 || day < 0 ? null : LocalDate.of(year, month, day);
+    }
+
+    // the index after yyyy-MM-ddTHH:mm:ss[.f{1,9}] at index 0, or -1
+    private static int dateTimeEnd(String s) {
+        if (s.length() < 19 || s.charAt(10) != 'T' || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return -1;
+        }
+        int end = 19;
+        if (end < s.length() && s.charAt(end) == '.') {
+            end++;
+            while (end < s.length() && end < 29 && Character.isDigit(s.charAt(end))) {
+                end++;
+            }
+            if (end == 20) {
+                return -1;
+            }
+        }
+        return end;
+    }
+
+    // the date-time ending at end, as found by dateTimeEnd, or null
+    private static @Nullable LocalDateTime fastDateTime(String s, int end) {
+        var date = fastDate(s);
+        int hour = digits(s, 11, 13);
+        int minute = digits(s, 14, 16);
+        int second = digits(s, 17, 19);
+        if (date == null || hour < 0 || minute < 0 || second < 0) {
+            return null;
+        }
+        int nano = 0;
+        if (end > 20) {
+            nano = digits(s, 20, end);
+            if (nano < 0) {
+                return null;
+            }
+            for (int i = end; i < 29; i++) {
+                nano *= 10;
+            }
+        }
+        return LocalDateTime.of(date, LocalTime.of(hour, minute, second, nano));
+    }
+
+    // Z or ±hh:mm from start to end, or null
+    private static @Nullable ZoneOffset fastOffset(String s, int start, int end) {
+        if (end == start + 1 && s.charAt(start) == 'Z') {
+            return ZoneOffset.UTC;
+        }
+        if (end != start + 6 || s.charAt(start + 3) != ':') {
+            return null;
+        }
+        char sign = s.charAt(start);
+        int hours = digits(s, start + 1, start + 3);
+        int minutes = digits(s, start + 4, start + 6);
+        if ((sign != '+' && sign != '-') || hours < 0 || minutes < 0) {
+            return null;
+        }
+        int totalMinutes = (sign == '-' ? -1 : 1) * (hours * 60 + minutes);
+        if (minutes % 15 == 0 && hours <= 18 && minutes < 60) {
+            int i = totalMinutes / 15 + 72;
+            if (i >= 0 && i < QUARTER_HOUR_OFFSETS.length) {
+                return QUARTER_HOUR_OFFSETS[i];
+            }
+        }
+        return sign == '-' ? ZoneOffset.ofHoursMinutes(-hours, -minutes) : ZoneOffset.ofHoursMinutes(hours, minutes);
+    }
+
+    private static ZoneId zone(String id) {
+        var zone = ZONES.get(id);
+        if (zone == null) {
+            zone = ZoneId.of(id);
+            if (ZONES.size() < MAX_CACHED_ZONES) {
+                ZONES.putIfAbsent(id, zone);
+            }
+        }
+        return zone;
+    }
+
+    /**
+     * Parse an {@code xs:date} without offset, e.g. {@code 2024-10-24}.
+     *
+     * @param s the characters
+     * @return the date
+     * @throws java.time.format.DateTimeParseException if the characters cannot be parsed
+     */
+    static LocalDate parseDate(String s) {
+        try {
+            var date = s.length() == 10 ? fastDate(s) : null;
+            if (date != null) {
+                return date;
+            }
+        } catch (DateTimeException e) {
+            // out-of-range fields; let the formatter report them
+        }
+        return LocalDate.parse(s);
+    }
+
+    /**
+     * Parse an {@code xs:dateTime} without offset, e.g. {@code 2024-10-24T12:34:56}.
+     *
+     * @param s the characters
+     * @return the date-time
+     * @throws java.time.format.DateTimeParseException if the characters cannot be parsed
+     */
+    static LocalDateTime parseDateTime(String s) {
+        try {
+            int end = dateTimeEnd(s);
+            var dateTime = end == s.length() ? fastDateTime(s, end) : null;
+            if (dateTime != null) {
+                return dateTime;
+            }
+        } catch (DateTimeException e) {
+            // out-of-range fields; let the formatter report them
+        }
+        return LocalDateTime.parse(s);
+    }
+
+    /**
+     * Parse an {@code xs:dateTime} with offset, e.g. {@code 2024-10-24T12:34:56+02:00}.
+     *
+     * @param s the characters
+     * @return the date-time
+     * @throws java.time.format.DateTimeParseException if the characters cannot be parsed
+     */
+    static OffsetDateTime parseOffsetDateTime(String s) {
+        try {
+            int end = dateTimeEnd(s);
+            if (end > 0) {
+                var dateTime = fastDateTime(s, end);
+                var offset = fastOffset(s, end, s.length());
+                if (dateTime != null && offset != null) {
+                    return OffsetDateTime.of(dateTime, offset);
+                }
+            }
+        } catch (DateTimeException e) {
+            // out-of-range fields; let the formatter report them
+        }
+        return OffsetDateTime.parse(s);
+    }
+
+    /**
+     * Parse a date-time with offset and optional zone ID, e.g.
+     * {@code 2024-10-24T12:34:56+02:00[Europe/Berlin]}. As with
+     * {@link ZonedDateTime#parse(CharSequence)}, the offset takes precedence
+     * over the zone in determining the instant.
+     *
+     * @param s the characters
+     * @return the date-time
+     * @throws java.time.format.DateTimeParseException if the characters cannot be parsed
+     */
+    static ZonedDateTime parseZonedDateTime(String s) {
+        try {
+            int end = dateTimeEnd(s);
+            if (end > 0) {
+                int bracket = s.indexOf('[', end);
+                var dateTime = fastDateTime(s, end);
+                var offset = fastOffset(s, end, bracket < 0 ? s.length() : bracket);
+                if (dateTime != null && offset != null) {
+                    if (bracket < 0) {
+                        return ZonedDateTime.of(dateTime, offset);
+                    }
+                    if (s.charAt(s.length() - 1) == ']' && bracket < s.length() - 2) {
+                        return ZonedDateTime.ofInstant(dateTime, offset, zone(s.substring(bracket + 1, s.length() - 1)));
+                    }
+                }
+            }
+        } catch (DateTimeException e) {
+            // out-of-range fields or unknown zone; let the formatter report them
+        }
+        return ZonedDateTime.parse(s);
+    }
+}
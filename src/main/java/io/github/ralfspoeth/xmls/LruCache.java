@@ -0,0 +1,142 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * A map which evicts its least recently used entries once it holds more
+ * than a maximum number of entries or a maximum total weight.
+ *
+ * <p>Instances are not thread-safe; callers guard them with a lock of
+ * their own, which typically also covers the decision what to insert.</p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+final class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<? super V> weigher;
+    private long weight;
+
+    /**
+     * Create an empty cache.
+     *
+     * @param maxEntries the maximum number of entries; must be positive
+     * @param maxWeight  the maximum total weight of the entries; must be positive
+     * @param weigher    the weight of a value; must be constant for each value
+     */
+    LruCache(int maxEntries, long maxWeight, ToLongFunction<? super V> weigher) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Create an empty cache bounded by the number of entries only.
+     *
+     * @param maxEntries the maximum number of entries; must be positive
+     */
+    LruCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, v -> 0L);
+    }
+
+    /**
+     * The value for the given key, which becomes the most recently used.
+     *
+     * @param key the key
+     * @return the value, or {@code null} if there is none
+     */
+    @Nullable V get(K key) {
+        return map.get(key);
+    }
+
+    /**
+     * Insert or replace the value for the given key as the most recently
+     * used entry, then evict the least recently used entries until the
+     * bounds are met. A value heavier than the maximum weight is evicted
+     * right away.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the number of entries evicted, not counting a replaced value
+     */
+    int put(K key, V value) {
+        var old = map.put(key, value);
+        if (old != null) {
+            weight -= weigher.applyAsLong(old);
+        }
+        weight += weigher.applyAsLong(value);
+        int evicted = 0;
+        var entries = map.entrySet().iterator();
+        while ((map.size() > maxEntries || weight > maxWeight) && entries.hasNext()) {
+            weight -= weigher.applyAsLong(entries.next().getValue());
+            entries.remove();
+            evicted++;
+        }
+        return evicted;
+    }
+
+    /**
+     * Remove the entry for the given key if it maps to the given value.
+     *
+     * @param key   the key
+     * @param value the value expected
+     * @return {@code true} if the entry has been removed
+     */
+    boolean remove(K key, V value) {
+        if (map.remove(key, value)) {
+            weight -= weigher.applyAsLong(value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove the entry for the given key, if any.
+     *
+     * @param key the key
+     */
+    void remove(K key) {
+        var old = map.remove(key);
+        if (old != null) {
+            weight -= weigher.applyAsLong(old);
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    /**
+     * The number of entries.
+     *
+     * @return the number of entries
+     */
+    int size() {
+        return map.size();
+    }
+
+    /**
+     * The total weight of the entries.
+     *
+     * @return the total weight
+     */
+    long weight() {
+        return weight;
+    }
+}
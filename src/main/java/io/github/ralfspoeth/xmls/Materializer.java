@@ -0,0 +1,60 @@
+package io.github.ralfspoeth.xmls;
+
+import org.w3c.dom.Node;
+
+/**
+ * Forces the lazily built parts of a DOM tree into existence.
+ *
+ * <p>The DOM implementation of the JDK defers the creation of nodes until
+ * they are first accessed: the parser records the document in compact
+ * tables, and each node fills in its children, attributes and data on first
+ * use. Reading a deferred document therefore writes to it, and concurrent
+ * reads race. After a full pass over every node, attribute and attribute
+ * value no deferred state remains, and reads through the node pointers
+ * &mdash; as done by {@link XmlStreams} and {@link XmlFunctions} &mdash; no
+ * longer modify the tree. The pass also creates the attribute maps which
+ * elements otherwise create on first access, even if not deferred.</p>
+ */
+final class Materializer {
+
+    // prevent instantiation
+    private Materializer() {}
+
+    /**
+     * Materialize the given node and all nodes below it.
+     *
+     * @param root the node
+     * @param <T>  the type of the node
+     * @return the node
+     */
+    static <T extends Node> T materialize(T root) {
+        Node n = root;
+        while (true) {
+            touch(n);
+            var child = n.getFirstChild();
+            if (child != null) {
+                n = child;
+                continue;
+            }
+            while (n != root && n.getNextSibling() == null) {
+                n = n.getParentNode();
+            }
+            if (n == root) {
+                return root;
+            }
+            n = n.getNextSibling();
+        }
+    }
+
+    private static void touch(Node n) {
+        n.getNodeName();
+        n.getNodeValue();
+        var attributes = n.getAttributes();
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                // attribute values are held in child nodes of their own
+                materialize(attributes.item(i));
+            }
+        }
+    }
+}
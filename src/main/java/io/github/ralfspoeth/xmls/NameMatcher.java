@@ -0,0 +1,230 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A precompiled test of element names, accepted by the navigators of
+ * {@link XmlFunctions} and the descendant traversals of {@link XmlStreams}.
+ *
+ * <p>Parsers keep the names they read in a symbol table, so that equal
+ * names in a document are usually one and the same string; the JDK's
+ * parser interns them. A matcher therefore interns the names it is created
+ * with and compares a candidate name by identity first. Names which are
+ * not identical are told apart by their cached hash codes before falling
+ * back to {@link String#equals(Object)}, so that elements created from
+ * names which are not interned are matched all the same. A matcher of a
+ * namespace URI and a local name tests both in one step, and a matcher of
+ * a set of names tests each candidate once against all of them.</p>
+ *
+ * <p>As a {@link Predicate} of nodes a matcher accepts matching
+ * {@link Element}s only. Matchers are immutable and thread-safe; create
+ * them once and share them.</p>
+ */
+public abstract sealed class NameMatcher implements Predicate<Node> {
+
+    // sets of names up to this size are scanned rather than hashed
+    private static final int MAX_SCANNED = 8;
+    // the number of names a set remembers as not matching, a power of two
+    private static final int REJECTED = 16;
+
+    private static final NameMatcher ANY = new Any();
+
+    private NameMatcher() {}
+
+    /**
+     * The matcher which accepts any element.
+     *
+     * @return the matcher
+     */
+    public static NameMatcher any() {
+        return ANY;
+    }
+
+    /**
+     * Match elements by their qualified name, like
+     * {@link Element#getElementsByTagName(String)}.
+     *
+     * @param name the qualified name; the literal {@code "*"} matches all elements
+     * @return the matcher
+     */
+    public static NameMatcher of(String name) {
+        return "*".equals(name) ? ANY : new QualifiedName(name);
+    }
+
+    /**
+     * Match elements by namespace URI and local name, like
+     * {@link Element#getElementsByTagNameNS(String, String)}.
+     *
+     * @param ns        the namespace URI; the literal {@code "*"} matches all namespaces,
+     *                  the empty string matches elements in no namespace
+     * @param localName the local name; the literal {@code "*"} matches all local names
+     * @return the matcher
+     */
+    public static NameMatcher of(String ns, String localName) {
+        if ("*".equals(ns)) {
+            return "*".equals(localName) ? ANY : new Namespaced(null, localName, true);
+        }
+        return new Namespaced(ns.isEmpty() ? null : ns, "*".equals(localName) ? null : localName, false);
+    }
+
+    /**
+     * Match elements whose qualified name is any of the given names.
+     *
+     * @param names the qualified names; {@code "*"} matches all elements
+     * @return the matcher
+     */
+    public static NameMatcher anyOf(String... names) {
+        return anyOf(List.of(names));
+    }
+
+    /**
+     * Match elements whose qualified name is any of the given names.
+     *
+     * @param names the qualified names; {@code "*"} matches all elements
+     * @return the matcher
+     */
+    public static NameMatcher anyOf(Collection<String> names) {
+        var distinct = Set.copyOf(names);
+        if (distinct.contains("*")) {
+            return ANY;
+        }
+        return distinct.size() == 1 ? new QualifiedName(distinct.iterator().next()) : new QualifiedNames(distinct);
+    }
+
+    /**
+     * Whether the given element matches.
+     *
+     * @param e the element
+     * @return {@code true} if the element's name matches
+     */
+    public abstract boolean matches(Element e);
+
+    /**
+     * Whether the given node is an element which matches.
+     *
+     * @param n the node
+     * @return {@code true} if the node is a matching element
+     */
+    @Override
+    public final boolean test(Node n) {
+        return n instanceof Element e && matches(e);
+    }
+
+    // identity first, then the cached hash codes, then equals
+    private static boolean same(String name, int hash, @Nullable String candidate) {
+        return name == candidate || candidate != null && candidate.hashCode() == hash && name.equals(candidate);
+    }
+
+    private static final class Any extends NameMatcher {
+
+        @Override
+        public boolean matches(Element e) {
+            return true;
+        }
+    }
+
+    private static final class QualifiedName extends NameMatcher {
+
+        private final String name;
+        private final int hash;
+
+        QualifiedName(String name) {
+            this.name = name.intern();
+            this.hash = name.hashCode();
+        }
+
+        @Override
+        public boolean matches(Element e) {
+            return same(name, hash, e.getTagName());
+        }
+    }
+
+    private static final class QualifiedNames extends NameMatcher {
+
+        private final String[] names;
+        private final int[] hashes;
+        private final @Nullable Set<String> set;
+        // names recently found not to match, by hash code; racy, but any
+        // entry read has been rejected, and strings are safely published
+        private final @Nullable String[] rejected = new String[REJECTED];
+
+        QualifiedNames(Set<String> names) {
+            this.names = names.stream().map(String::intern).toArray(String[]::new);
+            this.hashes = new int[this.names.length];
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = this.names[i].hashCode();
+            }
+            this.set = names.size() > MAX_SCANNED ? new HashSet<>(names) : null;
+        }
+
+        @Override
+        public boolean matches(Element e) {
+            var candidate = e.getTagName();
+            for (var name : names) {
+                if (name == candidate) {
+                    return true;
+                }
+            }
+            int hash = candidate.hashCode();
+            int slot = (hash ^ hash >>> 16) & (REJECTED - 1);
+            if (rejected[slot] == candidate) {
+                return false;
+            }
+            if (set != null ? set.contains(candidate) : scan(candidate)) {
+                return true;
+            }
+            rejected[slot] = candidate;
+            return false;
+        }
+
+        private boolean scan(String candidate) {
+            for (int i = 0; i < names.length; i++) {
+                if (same(names[i], hashes[i], candidate)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Namespaced extends NameMatcher {
+
+        // null for no namespace, unless any namespace will do
+        private final @Nullable String ns;
+        private final int nsHash;
+        // null for any local name
+        private final @Nullable String localName;
+        private final int localHash;
+        private final boolean anyNamespace;
+
+        Namespaced(@Nullable String ns, @Nullable String localName, boolean anyNamespace) {
+            this.ns = ns == null ? null : ns.intern();
+            this.nsHash = ns == null ? 0 : ns.hashCode();
+            this.localName = localName == null ? null : localName.intern();
+            this.localHash = localName == null ? 0 : localName.hashCode();
+            this.anyNamespace = anyNamespace;
+        }
+
+        @Override
+        public boolean matches(Element e) {
+            var local = localName;
+            if (local != null && !same(local, localHash, e.getLocalName())) {
+                return false;
+            }
+            if (anyNamespace) {
+                return true;
+            }
+            var uri = e.getNamespaceURI();
+            var n = ns;
+            return n == null ? uri == null : same(n, nsHash, uri);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.ralfspoeth.xmls;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+import java.util.ArrayDeque;
+
+/**
+ * Removes ignorable whitespace and processing instructions from a parsed
+ * document, as requested by {@link ParseOptions}.
+ */
+final class NodeCleaner {
+
+    private record Frame(Element element, boolean preserve) {}
+
+    // prevent instantiation
+    private NodeCleaner() {}
+
+    /**
+     * Remove the nodes not wanted by the given options, in one pass over
+     * the document.
+     *
+     * @param doc     the document, modified in place
+     * @param options the options
+     * @return the document
+     */
+    static Document clean(Document doc, ParseOptions options) {
+        if (!options.needsCleanup()) {
+            return doc;
+        }
+        boolean strip = options.stripWhitespace();
+        boolean dropProcessingInstructions = options.dropProcessingInstructions();
+        if (dropProcessingInstructions) {
+            removeProcessingInstructions(doc);
+        }
+        var root = doc.getDocumentElement();
+        if (root == null) {
+            return doc;
+        }
+        var stack = new ArrayDeque<Frame>();
+        stack.push(new Frame(root, false));
+        while (!stack.isEmpty()) {
+            var frame = stack.pop();
+            var element = frame.element();
+            boolean preserve = switch (element.getAttribute("xml:space")) {
+                case "preserve" -> true;
+                case "default" -> false;
+                default -> frame.preserve();
+            };
+            boolean hasElement = false;
+            boolean hasText = false;
+            for (var n = element.getFirstChild(); n != null; ) {
+                var next = n.getNextSibling();
+                switch (n.getNodeType()) {
+                    case Node.ELEMENT_NODE -> {
+                        hasElement = true;
+                        stack.push(new Frame((Element) n, preserve));
+                    }
+                    case Node.TEXT_NODE -> hasText |= !isWhitespace(((Text) n).getData());
+                    // explicit markup or entity content; treat as significant
+                    case Node.CDATA_SECTION_NODE, Node.ENTITY_REFERENCE_NODE -> hasText = true;
+                    case Node.PROCESSING_INSTRUCTION_NODE -> {
+                        if (dropProcessingInstructions) {
+                            element.removeChild(n);
+                        }
+                    }
+                    default -> {
+                        // comments are left to the parser
+                    }
+                }
+                n = next;
+            }
+            if (strip && !preserve && hasElement && !hasText) {
+                for (var n = element.getFirstChild(); n != null; ) {
+                    var next = n.getNextSibling();
+                    if (n.getNodeType() == Node.TEXT_NODE) {
+                        element.removeChild(n);
+                    }
+                    n = next;
+                }
+            }
+        }
+        return doc;
+    }
+
+    private static void removeProcessingInstructions(Document doc) {
+        for (var n = doc.getFirstChild(); n != null; ) {
+            var next = n.getNextSibling();
+            if (n.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE) {
+                doc.removeChild(n);
+            }
+            n = next;
+        }
+    }
+
+    // whether the text consists of XML white space only
+    private static boolean isWhitespace(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            switch (s.charAt(i)) {
+                case ' ', '\t', '\n', '\r' -> {}
+                default -> {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
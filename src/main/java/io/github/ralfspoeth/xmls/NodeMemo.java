@@ -0,0 +1,139 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A function of nodes whose results are cached per node identity, for
+ * {@link XmlFunctions#memoize(Function, int)} and
+ * {@link XmlFunctions#memoizeValue(Function, int)}.
+ *
+ * <p>The results for the nodes of a document are held in a cache of its
+ * own, a {@link LruCache} bounded by a maximum number of entries, which is
+ * attached to the document as {@linkplain Node#setUserData user data}
+ * under a key unique to the memo. The cache is therefore reachable through
+ * its document only and is collected along with it, without a global
+ * registry to be cleared. Nodes are compared by identity, whatever their
+ * {@code equals} methods do. Attaching the cache synchronizes on the
+ * document, and each cache is guarded by a lock of its own; the function
+ * is applied outside the lock, so that concurrent misses for one node may
+ * each apply it. {@code null} results are not cached.</p>
+ *
+ * @param <N> the type of the nodes
+ * @param <V> the type of the results
+ */
+final class NodeMemo<N extends Node, V> implements Function<N, V> {
+
+    private static final AtomicLong KEYS = new AtomicLong();
+
+    // identity semantics for nodes regardless of their equals methods
+    private record Identity(Node node) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Identity other && other.node == node;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(node);
+        }
+    }
+
+    private static final class Cache {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LruCache<Identity, Object> entries;
+
+        Cache(int maxEntries) {
+            this.entries = new LruCache<>(maxEntries);
+        }
+    }
+
+    private final String key = NodeMemo.class.getName() + '#' + KEYS.incrementAndGet();
+    private final Function<? super N, ? extends V> function;
+    private final int maxEntries;
+
+    /**
+     * Memoize the given function.
+     *
+     * @param function   the function
+     * @param maxEntries the maximum number of results held per document
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    NodeMemo(Function<? super N, ? extends V> function, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.function = function;
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V apply(N node) {
+        var cache = cache(node instanceof Document d ? d : node.getOwnerDocument());
+        if (cache == null) {
+            return function.apply(node);
+        }
+        var identity = new Identity(node);
+        cache.lock.lock();
+        try {
+            var cached = cache.entries.get(identity);
+            if (cached != null) {
+                return (V) cached;
+            }
+        } finally {
+            cache.lock.unlock();
+        }
+        V value = function.apply(node);
+        if (value != null) {
+            cache.lock.lock();
+            try {
+                cache.entries.put(identity, value);
+            } finally {
+                cache.lock.unlock();
+            }
+        }
+        return value;
+    }
+
+    // the cache attached to the given document, created if need be
+    private @Nullable Cache cache(@Nullable Document doc) {
+        if (doc == null) {
+            return null;
+        }
+        synchronized (doc) {
+            if (doc.getUserData(key) instanceof Cache c) {
+                return c;
+            }
+            var c = new Cache(maxEntries);
+            doc.setUserData(key, c, null);
+            return c;
+        }
+    }
+
+    /**
+     * The number of results held for the given document.
+     *
+     * @param doc the document
+     * @return the number of results
+     */
+    int size(Document doc) {
+        synchronized (doc) {
+            if (doc.getUserData(key) instanceof Cache c) {
+                c.lock.lock();
+                try {
+                    return c.entries.size();
+                } finally {
+                    c.lock.unlock();
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.ralfspoeth.xmls;
+
+/**
+ * Options controlling how {@link Xml} parses a document and which nodes it
+ * keeps.
+ *
+ * <p>Pretty-printed input carries a whitespace-only {@link org.w3c.dom.Text}
+ * node between any two elements, which roughly doubles the number of child
+ * nodes every traversal has to step over. Dropping those nodes, together
+ * with comments and processing instructions, shrinks both the heap taken by
+ * the document and the time taken to traverse it.</p>
+ *
+ * <p>Comments are dropped and CDATA sections coalesced by the parser
+ * itself. Whitespace and processing instructions are removed in a single
+ * pass over the parsed document. Whitespace is considered ignorable in
+ * element-only content: a whitespace-only text node is removed if its parent
+ * element has at least one child element and no text child containing
+ * anything but whitespace, unless the element or one of its ancestors is
+ * marked {@code xml:space="preserve"}. Text in mixed content is never
+ * touched.</p>
+ *
+ * <p>A {@linkplain #frozen() frozen} document is built completely while it
+ * is parsed, rather than node by node on first access, and is safe to be
+ * read from many threads at once, see {@link Xml#freeze(org.w3c.dom.Document)}.</p>
+ *
+ * @param namespaceAware             whether to parse with namespace awareness
+ * @param stripWhitespace            whether to remove whitespace-only text in element-only content
+ * @param dropComments               whether to drop comments
+ * @param dropProcessingInstructions whether to drop processing instructions
+ * @param coalesceCData              whether to turn CDATA sections into text merged with adjacent text
+ * @param frozen                     whether to build the complete document while parsing, for concurrent reads
+ */
+public record ParseOptions(
+        boolean namespaceAware,
+        boolean stripWhitespace,
+        boolean dropComments,
+        boolean dropProcessingInstructions,
+        boolean coalesceCData,
+        boolean frozen
+) {
+
+    /**
+     * The options used by {@link Xml#parse(CharSequence)} and its overloads:
+     * not namespace-aware and keeping all nodes.
+     */
+    public static final ParseOptions DEFAULT = new ParseOptions(false, false, false, false, false, false);
+
+    /**
+     * Keep elements, attributes and significant text only: strip ignorable
+     * whitespace, drop comments and processing instructions, and coalesce
+     * CDATA sections; not namespace-aware.
+     */
+    public static final ParseOptions COMPACT = new ParseOptions(false, true, true, true, true, false);
+
+    /**
+     * A copy of these options with the given namespace awareness.
+     *
+     * @param namespaceAware whether to parse with namespace awareness
+     * @return the options
+     */
+    public ParseOptions withNamespaceAware(boolean namespaceAware) {
+        return new ParseOptions(
+                namespaceAware, stripWhitespace, dropComments, dropProcessingInstructions, coalesceCData, frozen
+        );
+    }
+
+    /**
+     * A copy of these options with the given whitespace handling.
+     *
+     * @param stripWhitespace whether to remove whitespace-only text in element-only content
+     * @return the options
+     */
+    public ParseOptions withStripWhitespace(boolean stripWhitespace) {
+        return new ParseOptions(
+                namespaceAware, stripWhitespace, dropComments, dropProcessingInstructions, coalesceCData, frozen
+        );
+    }
+
+    /**
+     * A copy of these options with the given comment handling.
+     *
+     * @param dropComments whether to drop comments
+     * @return the options
+     */
+    public ParseOptions withDropComments(boolean dropComments) {
+        return new ParseOptions(
+                namespaceAware, stripWhitespace, dropComments, dropProcessingInstructions, coalesceCData, frozen
+        );
+    }
+
+    /**
+     * A copy of these options with the given processing instruction handling.
+     *
+     * @param dropProcessingInstructions whether to drop processing instructions
+     * @return the options
+     */
+    public ParseOptions withDropProcessingInstructions(boolean dropProcessingInstructions) {
+        return new ParseOptions(
+                namespaceAware, stripWhitespace, dropComments, dropProcessingInstructions, coalesceCData, frozen
+        );
+    }
+
+    /**
+     * A copy of these options with the given CDATA handling.
+     *
+     * @param coalesceCData whether to turn CDATA sections into text
+     * @return the options
+     */
+    public ParseOptions withCoalesceCData(boolean coalesceCData) {
+        return new ParseOptions(
+                namespaceAware, stripWhitespace, dropComments, dropProcessingInstructions, coalesceCData, frozen
+        );
+    }
+
+    /**
+     * A copy of these options with the given choice of freezing.
+     *
+     * @param frozen whether to build the complete document while parsing, for concurrent reads
+     * @return the options
+     */
+    public ParseOptions withFrozen(boolean frozen) {
+        return new ParseOptions(
+                namespaceAware, stripWhitespace, dropComments, dropProcessingInstructions, coalesceCData, frozen
+        );
+    }
+
+    /**
+     * The options which determine the configuration of the parser, with
+     * those applied after parsing turned off.
+     */
+    ParseOptions parserOptions() {
+        return new ParseOptions(namespaceAware, false, dropComments, false, coalesceCData, frozen);
+    }
+
+    /**
+     * Whether the parsed document needs a pass to remove nodes.
+     */
+    boolean needsCleanup() {
+        return stripWhitespace || dropProcessingInstructions;
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Document;
+
+import java.nio.file.Path;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The outcome of parsing a single file as part of a batch, see
+ * {@link Xml#parseAll(java.util.stream.Stream)}.
+ *
+ * <p>Exactly one of {@link #document()} and {@link #failure()} is
+ * non-{@code null}.</p>
+ *
+ * @param path     the path of the parsed file
+ * @param document the parsed document, or {@code null} if parsing failed
+ * @param failure  the reason parsing failed, or {@code null} if it succeeded
+ */
+public record ParseResult(Path path, @Nullable Document document, @Nullable XmlException failure) {
+
+    /**
+     * Canonical constructor.
+     *
+     * @throws IllegalArgumentException unless exactly one of {@code document}
+     *                                  and {@code failure} is {@code null}
+     */
+    public ParseResult {
+        requireNonNull(path);
+        if ((document == null) == (failure == null)) {
+            throw new IllegalArgumentException("exactly one of document and failure must be given");
+        }
+    }
+
+    /**
+     * Create a successful result.
+     *
+     * @param path     the path of the parsed file
+     * @param document the parsed document
+     * @return a result holding the document
+     */
+    public static ParseResult success(Path path, Document document) {
+        return new ParseResult(path, requireNonNull(document), null);
+    }
+
+    /**
+     * Create a failed result.
+     *
+     * @param path    the path of the file
+     * @param failure the reason parsing failed
+     * @return a result holding the failure
+     */
+    public static ParseResult failure(Path path, XmlException failure) {
+        return new ParseResult(path, null, requireNonNull(failure));
+    }
+
+    /**
+     * Whether the file has been parsed successfully.
+     *
+     * @return {@code true} if {@link #document()} is not {@code null}
+     */
+    public boolean succeeded() {
+        return document != null;
+    }
+
+    /**
+     * Return the parsed document or throw the failure.
+     *
+     * @return the parsed document
+     * @throws XmlException the failure if parsing failed
+     */
+    public Document orElseThrow() {
+        if (document == null) {
+            throw requireNonNull(failure);
+        }
+        return document;
+    }
+}
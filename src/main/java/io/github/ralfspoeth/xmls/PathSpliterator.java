@@ -0,0 +1,136 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over the elements below a node matched by the steps of an
+ * {@link XmlPath}, in document order.
+ *
+ * <p>The steps are numbered from one, the start node counting as step
+ * zero, and sets of steps are held as bit masks. The steps which the nodes
+ * on a level of the tree may match, their <em>reach</em>, follow from their
+ * parent alone: the successor of each step matched by the parent, and each
+ * descendant step within the reach of the parent. An element is reported
+ * if it matches the last step. Subtrees with an empty reach are skipped, so
+ * a path made up of child steps only never descends deeper than its
+ * length. Like {@link PruningSpliterator}, the traversal follows the
+ * pointers of the tree and allocates nothing per node, and it does not
+ * split.</p>
+ */
+final class PathSpliterator implements Spliterator<Element> {
+
+    private final Node start;
+    private final XmlPath.Step[] steps;
+    private final long stepMask;
+    private final long descendantMask;
+    private final long lastStep;
+    // the reach of the nodes at each depth
+    private long[] reach = new long[16];
+    // the next node to examine, or null if the traversal is complete
+    private @Nullable Node next;
+    // the depth of next below start
+    private int depth;
+
+    /**
+     * Create a spliterator over the elements below the given node matched
+     * by the given steps.
+     *
+     * @param start the node the steps are evaluated from
+     * @param steps at least one and at most 63 steps
+     */
+    PathSpliterator(Node start, XmlPath.Step[] steps) {
+        this.start = start;
+        this.steps = steps;
+        long descendants = 0;
+        for (int k = 1; k <= steps.length; k++) {
+            if (steps[k - 1].descendant()) {
+                descendants |= 1L << k;
+            }
+        }
+        this.lastStep = 1L << steps.length;
+        this.stepMask = (lastStep << 1) - 2;
+        this.descendantMask = descendants;
+        this.next = start.getFirstChild();
+        this.depth = 1;
+        this.reach[1] = reach(1L, 0L);
+    }
+
+    // the reach of the children of a node which matches the given steps and has the given reach
+    private long reach(long matched, long reach) {
+        return (matched << 1) & stepMask | reach & descendantMask;
+    }
+
+    private long matched(Node n, long reach) {
+        if (!(n instanceof Element e)) {
+            return 0;
+        }
+        long matched = 0;
+        for (long r = reach; r != 0; r &= r - 1) {
+            int k = Long.numberOfTrailingZeros(r);
+            if (steps[k - 1].matches(e)) {
+                matched |= 1L << k;
+            }
+        }
+        return matched;
+    }
+
+    private void advance(Node n, long childReach) {
+        if (childReach != 0) {
+            var child = n.getFirstChild();
+            if (child != null) {
+                next = child;
+                if (++depth == reach.length) {
+                    reach = Arrays.copyOf(reach, 2 * depth);
+                }
+                reach[depth] = childReach;
+                return;
+            }
+        }
+        while (n != start) {
+            var sibling = n.getNextSibling();
+            if (sibling != null) {
+                next = sibling;
+                return;
+            }
+            n = n.getParentNode();
+            depth--;
+        }
+        next = null;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Element> action) {
+        while (next != null) {
+            var n = next;
+            long r = reach[depth];
+            long matched = matched(n, r);
+            advance(n, reach(matched, r));
+            if ((matched & lastStep) != 0) {
+                action.accept((Element) n);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public @Nullable Spliterator<Element> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return next == null ? 0 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.ralfspoeth.xmls;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of reusable, non-thread-safe objects such as
+ * {@link javax.xml.parsers.DocumentBuilder}s.
+ *
+ * <p>The pool never blocks: {@link #acquire()} creates a fresh instance when
+ * no idle one is available, and {@link #release(Object)} silently drops the
+ * instance when the pool already holds {@code maxSize} idle instances. The
+ * idle instances are kept in a lock-based queue rather than in thread-locals
+ * so that the pool works equally well for platform and virtual threads.</p>
+ *
+ * @param <T> the type of the pooled objects
+ */
+final class Pool<T> {
+
+    private final Supplier<? extends T> factory;
+    private final Predicate<? super T> reset;
+    private final BlockingQueue<T> idle;
+
+    /**
+     * Create a new pool.
+     *
+     * @param maxSize the maximum number of idle instances kept; must be positive
+     * @param factory creates new instances on demand
+     * @param reset   resets an instance before it is returned to the pool;
+     *                returns {@code false} if the instance must not be reused
+     */
+    Pool(int maxSize, Supplier<? extends T> factory, Predicate<? super T> reset) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.factory = factory;
+        this.reset = reset;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Take an idle instance from the pool or create a new one.
+     *
+     * @return an instance exclusively owned by the caller until released
+     */
+    T acquire() {
+        var t = idle.poll();
+        return t != null ? t : factory.get();
+    }
+
+    /**
+     * Reset the given instance and return it to the pool.
+     *
+     * @param t an instance obtained from {@link #acquire()}
+     */
+    void release(T t) {
+        if (reset.test(t)) {
+            idle.offer(t);
+        }
+    }
+
+    /**
+     * The number of idle instances currently held.
+     *
+     * @return the number of idle instances
+     */
+    int idleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Read a positive pool size from the given system property.
+     *
+     * @param property     the name of the system property
+     * @param defaultValue the value used if the property is absent or invalid
+     * @return the configured pool size
+     */
+    static int sizeFromProperty(String property, int defaultValue) {
+        var value = Integer.getInteger(property, defaultValue);
+        return value > 0 ? value : defaultValue;
+    }
+}
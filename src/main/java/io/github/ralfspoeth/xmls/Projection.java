@@ -0,0 +1,477 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A set of named fields, each a relative {@link XmlPath} with a parser,
+ * extracted together from an element in a single traversal of its
+ * subtree.
+ *
+ * <p>A field either selects an attribute, with a path ending in
+ * {@code @name} and a parser of attribute values such as
+ * {@link XmlFunctions#intValue(Attr)}, or an element, with a parser of
+ * elements such as {@link XmlFunctions#dateContent(Element)}. Each field
+ * takes the first node selected by its path in document order and passes it
+ * to its parser, or {@code null} if the path selects nothing:</p>
+ * <pre>{@code
+ * var order = Projection.builder()
+ *         .value("id", "@id", XmlFunctions::intValue)
+ *         .content("date", "header/date", XmlFunctions::dateContent)
+ *         .value("currency", "total/@currency", XmlFunctions::stringValue)
+ *         .content("total", "total", XmlFunctions::decimalContent)
+ *         .build();
+ * Object[] values = order.values(element);
+ * }</pre>
+ *
+ * <p>The paths are merged into a trie of their steps, so that a prefix
+ * common to several fields, such as {@code total} above, is matched once.
+ * The extraction walks the subtree of the element once, descending only
+ * into subtrees which some unfilled field may still match: a step of the
+ * trie is no longer tried once all fields whose paths pass through it have
+ * been filled. The extraction ends as soon as all fields have been found.
+ * Build a projection once and apply it to any number of elements:
+ * instances are immutable and thread-safe.</p>
+ */
+public final class Projection {
+
+    /**
+     * A field: its name, the attribute it selects from the elements matched
+     * by its path, or {@code null} if it selects those elements, the parser
+     * of the node selected, and the position of the field it is a fallback
+     * of, or {@code -1} if there is none.
+     */
+    private record Field(String name, @Nullable String attribute, Function<@Nullable Node, ?> parser, int preferred) {}
+
+    private final Field[] fields;
+    // per field: the fallbacks dropped once it has been filled
+    private final int[][] fallbacks;
+    // per field: the trie nodes on its path, which it keeps open until filled
+    private final int[][] paths;
+    // per trie node: the number of fields whose paths pass through it
+    private final int[] fieldCounts;
+    // all trie nodes as a bit set
+    private final long[] allNodes;
+    private final Map<String, Integer> indices;
+    // the fields selected from the context element itself, or from its attributes
+    private final int[] rootFields;
+    private final long[] rootChildren;
+    // per trie node: its step, the fields it ends, and its children as a bit set
+    private final XmlPath.Step[] steps;
+    private final int[][] terminalFields;
+    private final long[][] children;
+    private final long[] descendantMask;
+    private final int words;
+
+    private Projection(Builder builder) {
+        this.fields = builder.fields.toArray(Field[]::new);
+        var indices = new HashMap<String, Integer>();
+        for (int i = 0; i < fields.length; i++) {
+            indices.put(fields[i].name(), i);
+        }
+        this.indices = Map.copyOf(indices);
+        this.fallbacks = new int[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            int preferred = i;
+            fallbacks[i] = IntStream.range(0, fields.length).filter(j -> fields[j].preferred() == preferred).toArray();
+        }
+        // number the trie nodes in preorder
+        var nodes = new ArrayList<Trie>();
+        builder.root.collect(nodes);
+        nodes.removeFirst();
+        this.words = (nodes.size() + Long.SIZE - 1) / Long.SIZE;
+        this.steps = new XmlPath.Step[nodes.size()];
+        this.terminalFields = new int[nodes.size()][];
+        this.children = new long[nodes.size()][];
+        this.descendantMask = new long[words];
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.get(i).id = i;
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            var node = nodes.get(i);
+            steps[i] = requireNonNull(node.step);
+            terminalFields[i] = node.fields();
+            children[i] = node.childMask(words);
+            if (steps[i].descendant()) {
+                descendantMask[i >>> 6] |= 1L << i;
+            }
+        }
+        this.rootFields = builder.root.fields();
+        this.rootChildren = builder.root.childMask(words);
+        this.paths = new int[fields.length][];
+        Arrays.fill(paths, new int[0]);
+        this.fieldCounts = new int[nodes.size()];
+        this.allNodes = new long[words];
+        for (int i = 0; i < nodes.size(); i++) {
+            allNodes[i >>> 6] |= 1L << i;
+            var path = new ArrayList<Integer>();
+            for (var t = nodes.get(i); t.step != null; t = requireNonNull(t.parent)) {
+                path.add(t.id);
+            }
+            for (int f : terminalFields[i]) {
+                paths[f] = path.stream().mapToInt(Integer::intValue).toArray();
+                for (int id : paths[f]) {
+                    fieldCounts[id]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a builder of a projection.
+     *
+     * @return a new builder without fields
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The names of the fields in the order they have been added, which is
+     * the order of the values returned by {@link #values(Element)}.
+     *
+     * @return the field names
+     */
+    public List<String> names() {
+        return Arrays.stream(fields).map(Field::name).toList();
+    }
+
+    /**
+     * The position of the given field among the values returned by
+     * {@link #values(Element)}.
+     *
+     * @param name the name of a field
+     * @return the position
+     * @throws IllegalArgumentException if there is no such field
+     */
+    public int index(String name) {
+        var i = indices.get(name);
+        if (i == null) {
+            throw new IllegalArgumentException("no such field: " + name);
+        }
+        return i;
+    }
+
+    /**
+     * Extract the values of all fields from the given element.
+     *
+     * @param element the element the paths are evaluated from
+     * @return the results of the parsers, in the order of the fields
+     */
+    public @Nullable Object[] values(Element element) {
+        return new Extraction(element).run();
+    }
+
+    /**
+     * Extract the values of all fields from the given element into a map.
+     *
+     * @param element the element the paths are evaluated from
+     * @return the results of the parsers by field name, in the order of the fields
+     */
+    public Map<String, @Nullable Object> map(Element element) {
+        var values = values(element);
+        var map = new LinkedHashMap<String, @Nullable Object>(fields.length * 4 / 3 + 1);
+        for (int i = 0; i < fields.length; i++) {
+            map.put(fields[i].name(), values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * The state of a single extraction.
+     */
+    private final class Extraction {
+        private final Element context;
+        private final @Nullable Object[] values = new Object[fields.length];
+        private final boolean[] filled = new boolean[fields.length];
+        private int remaining = fields.length;
+        // per trie node: the number of unfilled fields whose paths pass through it
+        private final int[] open = fieldCounts.clone();
+        // the trie nodes with unfilled fields
+        private final long[] live = allNodes.clone();
+        // the trie nodes the nodes at each depth may match, words per depth
+        private long[] reach = new long[8 * words];
+
+        Extraction(Element context) {
+            this.context = context;
+        }
+
+        @Nullable Object[] run() {
+            visit(rootFields, context);
+            if (remaining > 0) {
+                walk();
+            }
+            for (int i = 0; i < fields.length; i++) {
+                if (!filled[i]) {
+                    values[i] = fields[i].parser().apply(null);
+                }
+            }
+            return values;
+        }
+
+        // fill the unfilled fields among the given ones from the element or its attributes
+        private void visit(int[] ends, Element e) {
+            boolean attributes = false;
+            for (int i : ends) {
+                if (!filled[i]) {
+                    if (fields[i].attribute() == null) {
+                        fill(i, e);
+                    } else {
+                        attributes = true;
+                    }
+                }
+            }
+            if (attributes && e.hasAttributes()) {
+                // one pass over the attributes rather than a lookup per field
+                var map = e.getAttributes();
+                for (int j = 0; j < map.getLength(); j++) {
+                    var attr = map.item(j);
+                    var name = attr.getNodeName();
+                    for (int i : ends) {
+                        if (!filled[i] && name.equals(fields[i].attribute())) {
+                            fill(i, attr);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void fill(int i, Node selected) {
+            values[i] = fields[i].parser().apply(selected);
+            close(i);
+            for (int j : fallbacks[i]) {
+                if (!filled[j]) {
+                    // no longer wanted; its value stays null
+                    close(j);
+                }
+            }
+        }
+
+        // mark the field filled, and drop the trie nodes left without unfilled fields
+        private void close(int i) {
+            filled[i] = true;
+            remaining--;
+            for (int id : paths[i]) {
+                if (--open[id] == 0) {
+                    live[id >>> 6] &= ~(1L << id);
+                }
+            }
+        }
+
+        private void walk() {
+            var n = context.getFirstChild();
+            if (n == null || steps.length == 0) {
+                return;
+            }
+            int depth = 1;
+            System.arraycopy(rootChildren, 0, reach, words, words);
+            while (n != null && remaining > 0) {
+                if (reach.length < (depth + 2) * words) {
+                    reach = Arrays.copyOf(reach, 2 * reach.length);
+                }
+                // the reach of the children of n, computed in place one level
+                // down; the reach of a level may hold nodes dropped since, so
+                // it is masked with the live nodes whenever it is read
+                int base = depth * words;
+                int next = base + words;
+                boolean any = false;
+                for (int w = 0; w < words; w++) {
+                    long r = reach[base + w] & descendantMask[w] & live[w];
+                    reach[next + w] = r;
+                    any |= r != 0;
+                }
+                if (n instanceof Element e) {
+                    for (int w = 0; w < words; w++) {
+                        for (long r = reach[base + w] & live[w]; r != 0; r &= r - 1) {
+                            int id = w * Long.SIZE + Long.numberOfTrailingZeros(r);
+                            if ((live[w] & 1L << id) != 0 && steps[id].matches(e)) {
+                                visit(terminalFields[id], e);
+                                var mask = children[id];
+                                for (int v = 0; v < words; v++) {
+                                    reach[next + v] |= mask[v];
+                                }
+                            }
+                        }
+                    }
+                    // without the nodes the visits above have dropped
+                    any = false;
+                    for (int w = 0; w < words; w++) {
+                        reach[next + w] &= live[w];
+                        any |= reach[next + w] != 0;
+                    }
+                }
+                var child = any ? n.getFirstChild() : null;
+                if (child != null) {
+                    n = child;
+                    depth++;
+                    continue;
+                }
+                while (n != context && n.getNextSibling() == null) {
+                    n = n.getParentNode();
+                    depth--;
+                }
+                n = n == context ? null : n.getNextSibling();
+            }
+        }
+    }
+
+    /**
+     * A node of the trie of the steps of the fields' paths.
+     */
+    private static final class Trie {
+        private final XmlPath.@Nullable Step step;
+        private final List<Trie> children = new ArrayList<>();
+        private final List<Integer> fields = new ArrayList<>();
+        private final @Nullable Trie parent;
+        private int id;
+
+        Trie(@Nullable Trie parent, XmlPath.@Nullable Step step) {
+            this.parent = parent;
+            this.step = step;
+        }
+
+        Trie child(XmlPath.Step step) {
+            for (var c : children) {
+                if (step.equals(c.step)) {
+                    return c;
+                }
+            }
+            var c = new Trie(this, step);
+            children.add(c);
+            return c;
+        }
+
+        void collect(List<Trie> nodes) {
+            nodes.add(this);
+            children.forEach(c -> c.collect(nodes));
+        }
+
+        int[] fields() {
+            return fields.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        long[] childMask(int words) {
+            var mask = new long[words];
+            for (var c : children) {
+                mask[c.id >>> 6] |= 1L << c.id;
+            }
+            return mask;
+        }
+    }
+
+    /**
+     * A builder of a {@link Projection}.
+     */
+    public static final class Builder {
+        private final Trie root = new Trie(null, null);
+        private final List<Field> fields = new ArrayList<>();
+        private final Map<String, Integer> names = new HashMap<>();
+
+        private Builder() {}
+
+        /**
+         * Add a field which selects an attribute.
+         *
+         * @param name   the name of the field
+         * @param path   a relative path ending with an attribute step {@code @name}
+         * @param parser the parser of the attribute, such as {@link XmlFunctions#intValue(Attr)},
+         *               which receives {@code null} if there is none
+         * @return this builder
+         * @throws IllegalArgumentException if the name is taken, the path is
+         *                                  not valid, absolute, or does not select
+         *                                  a single named attribute
+         */
+        public Builder value(String name, String path, Function<@Nullable Attr, ?> parser) {
+            var compiled = XmlPath.compile(path);
+            var attribute = compiled.attribute();
+            if (attribute == null || attribute.equals("*")) {
+                throw new IllegalArgumentException("path does not select a named attribute: " + path);
+            }
+            return add(name, compiled, attribute, n -> parser.apply((Attr) n), -1);
+        }
+
+        /**
+         * Add a field which selects an element.
+         *
+         * @param name   the name of the field
+         * @param path   a relative path selecting elements; {@code .} for the
+         *               element the projection is applied to
+         * @param parser the parser of the element, such as {@link XmlFunctions#intContent(Element)},
+         *               which receives {@code null} if there is none
+         * @return this builder
+         * @throws IllegalArgumentException if the name is taken, the path is
+         *                                  not valid, absolute, or selects attributes
+         */
+        public Builder content(String name, String path, Function<@Nullable Element, ?> parser) {
+            var compiled = XmlPath.compile(path);
+            if (compiled.selectsAttributes()) {
+                throw new IllegalArgumentException("path selects attributes: " + path);
+            }
+            return add(name, compiled, null, n -> parser.apply((Element) n), -1);
+        }
+
+        /**
+         * Add a field which selects an element unless the given field, added
+         * before, has been filled; its value is then {@code null}, without
+         * applying the parser, and the extraction no longer looks for it.
+         *
+         * @param name      the name of the field
+         * @param path      a relative path selecting elements
+         * @param parser    the parser of the element, which receives {@code null} if there is none
+         * @param preferred the name of the field preferred to this one
+         * @return this builder
+         * @throws IllegalArgumentException if the name is taken, the preferred
+         *                                  field does not exist, or the path is
+         *                                  not valid, absolute, or selects attributes
+         */
+        Builder fallback(String name, String path, Function<@Nullable Element, ?> parser, String preferred) {
+            var i = names.get(preferred);
+            if (i == null) {
+                throw new IllegalArgumentException("no such field: " + preferred);
+            }
+            var compiled = XmlPath.compile(path);
+            if (compiled.selectsAttributes()) {
+                throw new IllegalArgumentException("path selects attributes: " + path);
+            }
+            return add(name, compiled, null, n -> parser.apply((Element) n), i);
+        }
+
+        private Builder add(String name, XmlPath path, @Nullable String attribute, Function<@Nullable Node, ?> parser, int preferred) {
+            if (path.absolute()) {
+                throw new IllegalArgumentException("path is absolute: " + path);
+            }
+            if (names.putIfAbsent(name, fields.size()) != null) {
+                throw new IllegalArgumentException("duplicate field: " + name);
+            }
+            var node = root;
+            for (var step : path.steps()) {
+                node = node.child(step);
+            }
+            node.fields.add(fields.size());
+            fields.add(new Field(name, attribute, parser, preferred));
+            return this;
+        }
+
+        /**
+         * Build the projection.
+         *
+         * @return the projection
+         */
+        public Projection build() {
+            return new Projection(this);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Node;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A spliterator over the descendant nodes of a node in document order
+ * which asks a function for each node whether to descend into its subtree,
+ * skip it, or stop altogether, see {@link VisitResult}.
+ *
+ * <p>Only nodes whose type is selected by the {@code whatToShow} bit mask,
+ * made up of the {@code SHOW_*} constants of
+ * {@link org.w3c.dom.traversal.NodeFilter}, are passed to the function and
+ * reported; the subtrees of other nodes are traversed nonetheless. Nodes
+ * below {@code maxDepth}, the children of the root being at depth one, are
+ * never touched. Like {@link DescendantSpliterator}, the traversal follows
+ * the pointers of the tree and allocates nothing per node. The spliterator
+ * does not split, since the function may stop the traversal at any
+ * node.</p>
+ */
+final class PruningSpliterator implements Spliterator<Node> {
+
+    private final Node root;
+    private final int whatToShow;
+    private final int maxDepth;
+    private final Function<? super Node, VisitResult> decision;
+    // the next node to examine, or null if the traversal is complete
+    private @Nullable Node next;
+    // the depth of next below root
+    private int depth;
+
+    PruningSpliterator(Node root, int whatToShow, int maxDepth, Function<? super Node, VisitResult> decision) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+        }
+        this.root = root;
+        this.whatToShow = whatToShow;
+        this.maxDepth = maxDepth;
+        this.decision = decision;
+        this.next = root.getFirstChild();
+        this.depth = 1;
+    }
+
+    private boolean shown(Node n) {
+        return (whatToShow & (1 << (n.getNodeType() - 1))) != 0;
+    }
+
+    private void advance(Node n, boolean descend) {
+        if (descend) {
+            var child = n.getFirstChild();
+            if (child != null) {
+                next = child;
+                depth++;
+                return;
+            }
+        }
+        while (n != root) {
+            var sibling = n.getNextSibling();
+            if (sibling != null) {
+                next = sibling;
+                return;
+            }
+            n = n.getParentNode();
+            depth--;
+        }
+        next = null;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Node> action) {
+        while (next != null) {
+            var n = next;
+            var shown = shown(n);
+            var result = shown ? decision.apply(n) : VisitResult.CONTINUE;
+            if (result == VisitResult.STOP) {
+                next = null;
+                return false;
+            }
+            advance(n, result == VisitResult.CONTINUE && depth < maxDepth);
+            if (shown) {
+                action.accept(n);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public @Nullable Spliterator<Node> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return next == null ? 0 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,330 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Binds elements to instances of a record class.
+ *
+ * <p>Each component of the record is bound to the attribute named like the
+ * component if the element has one, and to the child element named like
+ * the component otherwise; a {@link Bind} annotation binds it to a
+ * relative {@link XmlPath} instead. Values are converted with the typed
+ * parsers of {@link XmlFunctions}, by the type of the component:</p>
+ * <ul>
+ *   <li>{@code String}, {@code BigDecimal}, {@code LocalDate},
+ *       {@code LocalDateTime}, {@code OffsetDateTime}, {@code ZonedDateTime}
+ *       and the wrappers {@code Integer}, {@code Long}, {@code Double} and
+ *       {@code Boolean} are {@code null} if there is no value;</li>
+ *   <li>{@code int}, {@code long}, {@code double} and {@code boolean} are
+ *       zero or {@code false} if there is no value;</li>
+ *   <li>{@code Optional} of any of the above, {@code OptionalInt},
+ *       {@code OptionalLong} and {@code OptionalDouble} are empty if there
+ *       is no value;</li>
+ *   <li>a record is bound from the child element by a binder of its own.</li>
+ * </ul>
+ * <p>A value which cannot be parsed throws the exception of the
+ * parser.</p>
+ *
+ * <p>The record class is introspected once, when the binder is created:
+ * the components are compiled into a {@link Projection}, which extracts all
+ * of them in a single traversal of the element, and the canonical
+ * constructor is looked up as a {@link MethodHandle}. Binding does no
+ * reflection. Elements of any origin may be bound, including the detached
+ * elements streamed by {@link XmlStreams#records(java.io.InputStream, String)}.
+ * Create a binder once and share it: instances are immutable and
+ * thread-safe.</p>
+ *
+ * @param <R> the record type
+ */
+public final class RecordBinder<R extends Record> {
+
+    /**
+     * The parsers of a scalar type, returning {@code null} for no value.
+     */
+    private record Parsers(
+            Function<@Nullable Attr, @Nullable Object> value,
+            Function<@Nullable Element, @Nullable Object> content
+    ) {}
+
+    /**
+     * A component: the positions of its attribute and element fields in the
+     * projection, {@code -1} if there is none, and the conversion of the
+     * value parsed into the argument of the constructor.
+     */
+    private record Component(int attribute, int element, UnaryOperator<@Nullable Object> finish) {}
+
+    private static final Map<Class<?>, Parsers> SCALARS = Map.ofEntries(
+            Map.entry(String.class, new Parsers(
+                    a -> XmlFunctions.stringValue(a).orElse(null),
+                    e -> XmlFunctions.stringContent(e).orElse(null))),
+            Map.entry(Integer.class, new Parsers(
+                    a -> boxed(XmlFunctions.intValue(a)),
+                    e -> boxed(XmlFunctions.intContent(e)))),
+            Map.entry(Long.class, new Parsers(
+                    a -> boxed(XmlFunctions.longValue(a)),
+                    e -> boxed(XmlFunctions.longContent(e)))),
+            Map.entry(Double.class, new Parsers(
+                    a -> boxed(XmlFunctions.doubleValue(a)),
+                    e -> boxed(XmlFunctions.doubleContent(e)))),
+            Map.entry(Boolean.class, new Parsers(
+                    a -> XmlFunctions.booleanValue(a).orElse(null),
+                    e -> XmlFunctions.booleanContent(e).orElse(null))),
+            Map.entry(BigDecimal.class, new Parsers(
+                    a -> XmlFunctions.decimalValue(a).orElse(null),
+                    e -> XmlFunctions.decimalContent(e).orElse(null))),
+            Map.entry(LocalDate.class, new Parsers(
+                    a -> XmlFunctions.dateValue(a).orElse(null),
+                    e -> XmlFunctions.dateContent(e).orElse(null))),
+            Map.entry(LocalDateTime.class, new Parsers(
+                    a -> XmlFunctions.dateTimeValue(a).orElse(null),
+                    e -> XmlFunctions.dateTimeContent(e).orElse(null))),
+            Map.entry(OffsetDateTime.class, new Parsers(
+                    a -> XmlFunctions.offsetDateTimeValue(a).orElse(null),
+                    e -> XmlFunctions.offsetDateTimeContent(e).orElse(null))),
+            Map.entry(ZonedDateTime.class, new Parsers(
+                    a -> XmlFunctions.zonedDateTimeValue(a).orElse(null),
+                    e -> XmlFunctions.zonedDateTimeContent(e).orElse(null)))
+    );
+
+    private static final Map<Class<?>, Class<?>> WRAPPERS = Map.of(
+            int.class, Integer.class,
+            long.class, Long.class,
+            double.class, Double.class,
+            boolean.class, Boolean.class
+    );
+
+    private static final Map<Class<?>, Object> DEFAULTS = Map.of(
+            int.class, 0,
+            long.class, 0L,
+            double.class, 0.0,
+            boolean.class, false
+    );
+
+    private final Class<R> type;
+    private final Projection projection;
+    private final Component[] components;
+    // the canonical constructor taking its arguments as an Object[]
+    private final MethodHandle constructor;
+
+    private RecordBinder(Class<R> type, MethodHandles.Lookup lookup, Set<Class<?>> enclosing) {
+        if (!type.isRecord()) {
+            throw new IllegalArgumentException("not a record class: " + type.getName());
+        }
+        if (!enclosing.add(type)) {
+            throw new IllegalArgumentException("recursive record class: " + type.getName());
+        }
+        this.type = type;
+        var recordComponents = type.getRecordComponents();
+        var builder = Projection.builder();
+        int fields = 0;
+        this.components = new Component[recordComponents.length];
+        for (int i = 0; i < recordComponents.length; i++) {
+            var rc = recordComponents[i];
+            var name = rc.getName();
+            var target = target(rc);
+            var nested = target.isRecord() ? nested(target, lookup, enclosing) : null;
+            var parsers = nested != null
+                    ? new Parsers(a -> null, e -> e == null ? null : nested.bind(e))
+                    : SCALARS.get(target);
+            if (parsers == null) {
+                throw new IllegalArgumentException("unsupported type of component " + name + ": " + rc.getGenericType());
+            }
+            var bind = rc.getAnnotation(Bind.class);
+            int attribute = -1;
+            int element = -1;
+            if (bind != null) {
+                if (XmlPath.compile(bind.value()).selectsAttributes()) {
+                    if (nested != null) {
+                        throw new IllegalArgumentException("record component " + name + " bound to an attribute");
+                    }
+                    builder.value(name, bind.value(), parsers.value());
+                    attribute = fields++;
+                } else {
+                    builder.content(name, bind.value(), parsers.content());
+                    element = fields++;
+                }
+            } else {
+                if (nested == null) {
+                    // the child element is neither parsed nor looked for
+                    // once the attribute has been found
+                    builder.value("@" + name, "@" + name, parsers.value());
+                    attribute = fields++;
+                    builder.fallback(name, name, parsers.content(), "@" + name);
+                } else {
+                    builder.content(name, name, parsers.content());
+                }
+                element = fields++;
+            }
+            components[i] = new Component(attribute, element, finisher(rc.getType()));
+        }
+        enclosing.remove(type);
+        this.projection = builder.build();
+        this.constructor = constructor(type, lookup, recordComponents);
+    }
+
+    /**
+     * Create a binder of the given public record class.
+     *
+     * @param type the record class
+     * @param <R>  the record type
+     * @return the binder
+     * @throws IllegalArgumentException if the class is not a public record,
+     *                                  or a component has an unsupported type
+     *                                  or an invalid {@link Bind} path
+     */
+    public static <R extends Record> RecordBinder<R> of(Class<R> type) {
+        return of(type, MethodHandles.publicLookup());
+    }
+
+    /**
+     * Create a binder of the given record class, whose canonical constructor
+     * is accessible through the given lookup; pass
+     * {@link MethodHandles#lookup()} to bind records private to the caller.
+     *
+     * @param type   the record class
+     * @param lookup the lookup used to find the canonical constructors of
+     *               the record class and of nested record classes
+     * @param <R>    the record type
+     * @return the binder
+     * @throws IllegalArgumentException if the class is not a record, its
+     *                                  constructor is not accessible, or a
+     *                                  component has an unsupported type or
+     *                                  an invalid {@link Bind} path
+     */
+    public static <R extends Record> RecordBinder<R> of(Class<R> type, MethodHandles.Lookup lookup) {
+        return new RecordBinder<>(type, lookup, new HashSet<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RecordBinder<?> nested(Class<?> type, MethodHandles.Lookup lookup, Set<Class<?>> enclosing) {
+        return new RecordBinder<>((Class<? extends Record>) type, lookup, enclosing);
+    }
+
+    // the type of the value parsed for the component
+    private static Class<?> target(RecordComponent rc) {
+        var raw = rc.getType();
+        if (raw == OptionalInt.class) {
+            return Integer.class;
+        }
+        if (raw == OptionalLong.class) {
+            return Long.class;
+        }
+        if (raw == OptionalDouble.class) {
+            return Double.class;
+        }
+        if (raw == Optional.class) {
+            if (rc.getGenericType() instanceof ParameterizedType p
+                    && p.getActualTypeArguments()[0] instanceof Class<?> c) {
+                return c;
+            }
+            throw new IllegalArgumentException("unsupported type of component " + rc.getName() + ": " + rc.getGenericType());
+        }
+        return WRAPPERS.getOrDefault(raw, raw);
+    }
+
+    // the conversion of the value parsed, or null, into the argument of the constructor
+    private static UnaryOperator<@Nullable Object> finisher(Class<?> raw) {
+        if (raw == Optional.class) {
+            return Optional::ofNullable;
+        }
+        if (raw == OptionalInt.class) {
+            return v -> v == null ? OptionalInt.empty() : OptionalInt.of((Integer) v);
+        }
+        if (raw == OptionalLong.class) {
+            return v -> v == null ? OptionalLong.empty() : OptionalLong.of((Long) v);
+        }
+        if (raw == OptionalDouble.class) {
+            return v -> v == null ? OptionalDouble.empty() : OptionalDouble.of((Double) v);
+        }
+        var zero = DEFAULTS.get(raw);
+        if (zero != null) {
+            return v -> v == null ? zero : v;
+        }
+        return v -> v;
+    }
+
+    private static MethodHandle constructor(Class<?> type, MethodHandles.Lookup lookup, RecordComponent[] components) {
+        var parameters = Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new);
+        try {
+            return lookup.findConstructor(type, MethodType.methodType(void.class, parameters))
+                    .asSpreader(Object[].class, parameters.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("canonical constructor not accessible: " + type.getName(), e);
+        }
+    }
+
+    private static @Nullable Object boxed(OptionalInt value) {
+        return value.isPresent() ? value.getAsInt() : null;
+    }
+
+    private static @Nullable Object boxed(OptionalLong value) {
+        return value.isPresent() ? value.getAsLong() : null;
+    }
+
+    private static @Nullable Object boxed(OptionalDouble value) {
+        return value.isPresent() ? value.getAsDouble() : null;
+    }
+
+    /**
+     * The record class bound.
+     *
+     * @return the record class
+     */
+    public Class<R> type() {
+        return type;
+    }
+
+    /**
+     * Bind the given element to a new record.
+     *
+     * @param element the element
+     * @return the record
+     * @throws NumberFormatException                  if a numeric value cannot be parsed
+     * @throws java.time.format.DateTimeParseException if a date or time cannot be parsed
+     * @throws IllegalArgumentException               if a boolean cannot be parsed
+     *                                                or the constructor rejects the values
+     */
+    public R bind(Element element) {
+        var values = projection.values(element);
+        var arguments = new @Nullable Object[components.length];
+        for (int i = 0; i < components.length; i++) {
+            var c = components[i];
+            @Nullable Object value = c.attribute() < 0 ? null : values[c.attribute()];
+            if (value == null && c.element() >= 0) {
+                value = values[c.element()];
+            }
+            arguments[i] = c.finish().apply(value);
+        }
+        try {
+            return type.cast(constructor.invokeExact(arguments));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("constructor of " + type.getName() + " failed", t);
+        }
+    }
+}
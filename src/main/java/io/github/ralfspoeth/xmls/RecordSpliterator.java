@@ -0,0 +1,87 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Element;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Pulls events from an {@link XMLStreamReader} and reports each element
+ * with a matching name as a detached DOM fragment, see
+ * {@link StaxSupport#fragment(XMLStreamReader)}.
+ *
+ * <p>An element is matched either by its qualified name or by its
+ * namespace URI and local name. Matching elements nested within a reported
+ * element are part of its fragment and are not reported separately.</p>
+ */
+final class RecordSpliterator extends Spliterators.AbstractSpliterator<Element> {
+
+    private final XMLStreamReader reader;
+    private final @Nullable String ns;
+    private final @Nullable String prefix;
+    private final String localName;
+
+    private RecordSpliterator(XMLStreamReader reader, @Nullable String ns, @Nullable String prefix, String localName) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.reader = reader;
+        this.ns = ns;
+        this.prefix = prefix;
+        this.localName = localName;
+    }
+
+    /**
+     * Match elements by their qualified name.
+     *
+     * @param reader the reader
+     * @param name   the qualified name, with or without prefix
+     * @return a new spliterator
+     */
+    static RecordSpliterator byName(XMLStreamReader reader, String name) {
+        var colon = name.indexOf(':');
+        return new RecordSpliterator(reader, null, colon < 0 ? "" : name.substring(0, colon), name.substring(colon + 1));
+    }
+
+    /**
+     * Match elements by namespace URI and local name.
+     *
+     * @param reader    the reader
+     * @param ns        the namespace URI; the empty string matches elements in no namespace
+     * @param localName the local name
+     * @return a new spliterator
+     */
+    static RecordSpliterator byNamespace(XMLStreamReader reader, String ns, String localName) {
+        return new RecordSpliterator(reader, ns, null, localName);
+    }
+
+    private boolean matches() {
+        if (!localName.equals(reader.getLocalName())) {
+            return false;
+        }
+        if (ns != null) {
+            return ns.equals(StaxSupport.namespace(reader.getNamespaceURI()));
+        }
+        var p = reader.getPrefix();
+        return prefix != null && prefix.equals(p == null ? "" : p);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Element> action) {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == START_ELEMENT && matches()) {
+                    action.accept(StaxSupport.fragment(reader));
+                    return true;
+                }
+            }
+            return false;
+        } catch (XMLStreamException e) {
+            throw new XmlException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.ralfspoeth.xmls;
+
+import java.io.InputStream;
+import java.lang.foreign.MemorySegment;
+import java.util.Objects;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+/**
+ * An {@link InputStream} reading the bytes of a {@link MemorySegment},
+ * from offset zero up to the segment's size.
+ *
+ * <p>The bytes are copied straight from the segment into the caller's
+ * buffer; in particular, a memory-mapped file is read without an
+ * intermediate copy into a heap buffer. Segments larger than 2 GB are
+ * supported. The stream does not own the segment; closing the stream
+ * has no effect on it.</p>
+ */
+final class SegmentInputStream extends InputStream {
+
+    private final MemorySegment segment;
+    private long position;
+
+    SegmentInputStream(MemorySegment segment) {
+        this.segment = segment;
+    }
+
+    private long remaining() {
+        return segment.byteSize() - position;
+    }
+
+    @Override
+    public int read() {
+        return remaining() > 0 ? segment.get(JAVA_BYTE, position++) & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        var remaining = remaining();
+        if (remaining <= 0) {
+            return -1;
+        }
+        var n = (int) Math.min(len, remaining);
+        MemorySegment.copy(segment, JAVA_BYTE, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        var skipped = Math.clamp(n, 0L, remaining());
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(remaining(), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,204 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/**
+ * Helpers for reading XML with a {@link XMLStreamReader} and for turning
+ * the element the reader is positioned at into a small DOM fragment.
+ */
+final class StaxSupport {
+
+    private static final DOMImplementation DOM = domImplementation();
+
+    private static DOMImplementation domImplementation() {
+        try {
+            return DocumentBuilderFactory.newDefaultInstance().newDocumentBuilder().getDOMImplementation();
+        } catch (ParserConfigurationException e) {
+            throw new XmlException("Failed to create DocumentBuilder", e);
+        }
+    }
+
+    // prevent instantiation
+    private StaxSupport() {}
+
+    /**
+     * Create a namespace-aware, coalescing reader for the given stream.
+     * Closing the reader does not close the stream.
+     *
+     * @param in the input stream
+     * @return a new reader positioned at the start of the document
+     * @throws XmlException if the reader cannot be created
+     */
+    static XMLStreamReader reader(InputStream in) {
+        try {
+            return factory().createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            throw new XmlException(e);
+        }
+    }
+
+    /**
+     * Create a namespace-aware, coalescing reader for the given character
+     * stream. Closing the reader does not close the stream.
+     *
+     * @param in the character stream
+     * @return a new reader positioned at the start of the document
+     * @throws XmlException if the reader cannot be created
+     */
+    static XMLStreamReader reader(Reader in) {
+        try {
+            return factory().createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            throw new XmlException(e);
+        }
+    }
+
+    private static XMLInputFactory factory() {
+        // factories are cheap compared to a stream worth reading with StAX,
+        // and not guaranteed to be thread-safe
+        var factory = XMLInputFactory.newDefaultFactory();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Close the given reader, wrapping any failure in an {@link XmlException}.
+     *
+     * @param reader the reader
+     */
+    static void close(XMLStreamReader reader) {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new XmlException(e);
+        }
+    }
+
+    /**
+     * The namespace URI of the current element or attribute name, with
+     * "no namespace" normalized to the empty string.
+     *
+     * @param uri the URI as reported by the reader
+     * @return the URI, or the empty string
+     */
+    static String namespace(@Nullable String uri) {
+        return uri == null ? "" : uri;
+    }
+
+    /**
+     * The qualified name made up of the given prefix and local name.
+     *
+     * @param prefix    the prefix as reported by the reader; may be {@code null} or empty
+     * @param localName the local name
+     * @return the qualified name
+     */
+    static String qualifiedName(@Nullable String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Copy the element the reader is positioned at, including its subtree,
+     * into a new {@link Document} of which it becomes the document element.
+     *
+     * <p>On return the reader is positioned at the element's
+     * {@code END_ELEMENT} event. Namespace declarations inherited from
+     * ancestors of the element are not copied; the namespace URIs of the
+     * copied elements and attributes are retained nonetheless.</p>
+     *
+     * @param reader a reader positioned at a {@code START_ELEMENT} event
+     * @return the copy of the element
+     * @throws XMLStreamException if reading fails
+     */
+    static Element fragment(XMLStreamReader reader) throws XMLStreamException {
+        var doc = document();
+        var root = startElement(doc, reader);
+        doc.appendChild(root);
+        Node current = root;
+        while (current != doc) {
+            switch (reader.next()) {
+                case START_ELEMENT -> current = current.appendChild(startElement(doc, reader));
+                case END_ELEMENT -> current = current.getParentNode();
+                case CHARACTERS, SPACE -> current.appendChild(doc.createTextNode(reader.getText()));
+                case CDATA -> current.appendChild(doc.createCDATASection(reader.getText()));
+                case COMMENT -> current.appendChild(doc.createComment(reader.getText()));
+                case PROCESSING_INSTRUCTION -> current.appendChild(
+                        doc.createProcessingInstruction(reader.getPITarget(), reader.getPIData())
+                );
+                case ENTITY_REFERENCE -> current.appendChild(doc.createEntityReference(reader.getLocalName()));
+                default -> {
+                    // nothing else occurs within an element
+                }
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Create an empty document to own detached nodes.
+     *
+     * @return a new document without a document element
+     */
+    static Document document() {
+        return DOM.createDocument(null, null, null);
+    }
+
+    /**
+     * Copy an attribute of the element the reader is positioned at into a
+     * detached {@link Attr} owned by the given document.
+     *
+     * @param doc    the owner document of the copy
+     * @param reader a reader positioned at a {@code START_ELEMENT} event
+     * @param index  the index of the attribute
+     * @return the copy of the attribute
+     */
+    static Attr attribute(Document doc, XMLStreamReader reader, int index) {
+        var uri = reader.getAttributeNamespace(index);
+        var attr = doc.createAttributeNS(
+                uri == null || uri.isEmpty() ? null : uri,
+                qualifiedName(reader.getAttributePrefix(index), reader.getAttributeLocalName(index))
+        );
+        attr.setValue(reader.getAttributeValue(index));
+        return attr;
+    }
+
+    private static Element startElement(Document doc, XMLStreamReader reader) {
+        var uri = reader.getNamespaceURI();
+        var element = doc.createElementNS(
+                uri == null || uri.isEmpty() ? null : uri,
+                qualifiedName(reader.getPrefix(), reader.getLocalName())
+        );
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            var prefix = reader.getNamespacePrefix(i);
+            element.setAttributeNS(
+                    XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                    prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix,
+                    namespace(reader.getNamespaceURI(i))
+            );
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            var attrUri = reader.getAttributeNamespace(i);
+            element.setAttributeNS(
+                    attrUri == null || attrUri.isEmpty() ? null : attrUri,
+                    qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                    reader.getAttributeValue(i)
+            );
+        }
+        return element;
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Evaluates an {@link XmlPath} over the events of an
+ * {@link XMLStreamReader}, from the document node, in a single forward
+ * pass.
+ *
+ * <p>Like {@link PathSpliterator}, the spliterator keeps the set of steps
+ * the elements on each level of the tree may match as a bit mask, which
+ * follows from the parent alone; the memory required is therefore bounded
+ * by the depth of the document. Subtrees no step may match are skipped
+ * without examining their elements. An element matched by a path which
+ * selects elements is reported as a detached fragment, see
+ * {@link StaxSupport#fragment(XMLStreamReader)}; matching elements nested
+ * within it are part of the fragment and are not reported separately. The
+ * attributes selected by a path ending with an attribute step are reported
+ * as detached {@link Attr}s owned by an otherwise empty document.</p>
+ */
+final class StreamingPathSpliterator<T extends Node> extends Spliterators.AbstractSpliterator<T> {
+
+    private final XMLStreamReader reader;
+    private final XmlPath.Step[] steps;
+    private final @Nullable String attribute;
+    private final long stepMask;
+    private final long descendantMask;
+    private final long lastStep;
+    // the reach of the elements at each depth
+    private long[] reach = new long[16];
+    // the depth of the current element, the document element being at depth one
+    private int depth;
+    // attributes of the last matching element not yet reported
+    private final ArrayDeque<Attr> pending = new ArrayDeque<>();
+    // the owner of reported attributes, created on demand
+    private @Nullable Document owner;
+
+    private StreamingPathSpliterator(XMLStreamReader reader, XmlPath path) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.reader = reader;
+        this.steps = path.steps().toArray(XmlPath.Step[]::new);
+        this.attribute = path.attribute();
+        long descendants = 0;
+        for (int k = 1; k <= steps.length; k++) {
+            if (steps[k - 1].descendant()) {
+                descendants |= 1L << k;
+            }
+        }
+        this.lastStep = 1L << steps.length;
+        this.stepMask = (lastStep << 1) - 2;
+        this.descendantMask = descendants;
+        this.reach[1] = steps.length == 0 ? 0 : reach(1L, 0L);
+    }
+
+    /**
+     * Report the elements selected by the given path.
+     *
+     * @param reader the reader
+     * @param path   a path which does not select attributes
+     * @return a new spliterator
+     */
+    static StreamingPathSpliterator<Element> elements(XMLStreamReader reader, XmlPath path) {
+        return new StreamingPathSpliterator<>(reader, path);
+    }
+
+    /**
+     * Report the attributes selected by the given path.
+     *
+     * @param reader the reader
+     * @param path   a path which selects attributes
+     * @return a new spliterator
+     */
+    static StreamingPathSpliterator<Attr> attributes(XMLStreamReader reader, XmlPath path) {
+        return new StreamingPathSpliterator<>(reader, path);
+    }
+
+    // the reach of the children of an element which matches the given steps and has the given reach
+    private long reach(long matched, long reach) {
+        return (matched << 1) & stepMask | reach & descendantMask;
+    }
+
+    private long matched(long reach) {
+        long matched = 0;
+        for (long r = reach; r != 0; r &= r - 1) {
+            int k = Long.numberOfTrailingZeros(r);
+            if (matches(steps[k - 1])) {
+                matched |= 1L << k;
+            }
+        }
+        return matched;
+    }
+
+    private boolean matches(XmlPath.Step step) {
+        var name = step.name();
+        if (name != null && !isNamed(name, reader.getPrefix(), reader.getLocalName())) {
+            return false;
+        }
+        var conditions = step.conditions();
+        for (int i = 0; i < conditions.size(); i++) {
+            var c = conditions.get(i);
+            int index = attributeIndex(c.name());
+            var value = c.value();
+            if (index < 0 || value != null && !value.equals(reader.getAttributeValue(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int attributeIndex(String name) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (isNamed(name, reader.getAttributePrefix(i), reader.getAttributeLocalName(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // whether the qualified name is made up of the prefix and local name, without concatenating them
+    private static boolean isNamed(String qualifiedName, @Nullable String prefix, String localName) {
+        if (prefix == null || prefix.isEmpty()) {
+            return qualifiedName.equals(localName);
+        }
+        return qualifiedName.length() == prefix.length() + 1 + localName.length()
+                && qualifiedName.charAt(prefix.length()) == ':'
+                && qualifiedName.startsWith(prefix)
+                && qualifiedName.endsWith(localName);
+    }
+
+    private void collectAttributes(String name) {
+        var doc = owner;
+        if (doc == null) {
+            doc = owner = StaxSupport.document();
+        }
+        if (name.equals("*")) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                pending.add(StaxSupport.attribute(doc, reader, i));
+            }
+        } else {
+            int index = attributeIndex(name);
+            if (index >= 0) {
+                pending.add(StaxSupport.attribute(doc, reader, index));
+            }
+        }
+    }
+
+    // move the reader to the end of the current element
+    private void skipSubtree() throws XMLStreamException {
+        int open = 1;
+        while (open > 0) {
+            switch (reader.next()) {
+                case START_ELEMENT -> open++;
+                case END_ELEMENT -> open--;
+                default -> {
+                    // no other event changes the depth
+                }
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super T> action) {
+        try {
+            while (pending.isEmpty()) {
+                if (!reader.hasNext()) {
+                    return false;
+                }
+                switch (reader.next()) {
+                    case START_ELEMENT -> {
+                        long r = reach[++depth];
+                        long matched = r == 0 ? 0 : matched(r);
+                        if ((matched & lastStep) != 0) {
+                            var name = attribute;
+                            if (name == null) {
+                                depth--;
+                                action.accept((T) StaxSupport.fragment(reader));
+                                return true;
+                            }
+                            collectAttributes(name);
+                        }
+                        long childReach = reach(matched, r);
+                        if (childReach == 0) {
+                            depth--;
+                            skipSubtree();
+                        } else {
+                            if (depth + 1 == reach.length) {
+                                reach = Arrays.copyOf(reach, 2 * reach.length);
+                            }
+                            reach[depth + 1] = childReach;
+                        }
+                    }
+                    case END_ELEMENT -> depth--;
+                    default -> {
+                        // text and other events outside of matching elements are of no interest
+                    }
+                }
+            }
+            action.accept((T) pending.remove());
+            return true;
+        } catch (XMLStreamException e) {
+            throw new XmlException(e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.ralfspoeth.xmls;
+
+/**
+ * The decision of a visitor passed to
+ * {@link XmlStreams#walk(org.w3c.dom.Node, int, int, java.util.function.Function)}
+ * or of a pruning function passed to
+ * {@link XmlStreams#descendantElements(org.w3c.dom.Element, int, java.util.function.Function)}
+ * on how to proceed with the traversal after visiting a node.
+ */
+public enum VisitResult {
+    /**
+     * Continue with the children of the node, if any.
+     */
+    CONTINUE,
+    /**
+     * Skip the children and all other descendants of the node and continue
+     * with its next sibling; the node itself counts as visited.
+     */
+    SKIP_SUBTREE,
+    /**
+     * Terminate the traversal; the node itself does not count as visited.
+     */
+    STOP
+}
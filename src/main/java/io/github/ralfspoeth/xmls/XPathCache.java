@@ -0,0 +1,182 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathEvaluationResult;
+import javax.xml.xpath.XPathException;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathNodes;
+import java.math.BigDecimal;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of compiled XPath expressions for
+ * {@link XmlFunctions#xpath(String)} and its typed variants.
+ *
+ * <p>Neither {@link XPath} nor {@link XPathExpression} objects may be used
+ * by several threads at once, and both are expensive to create. The cache
+ * therefore holds a {@link Pool} of compiled instances per expression, and
+ * a pool of {@link XPath}s to compile them with; evaluating takes an
+ * instance from the pool of its expression and returns it afterwards. Like
+ * the pools of {@link Xml}, they are lock-based queues rather than
+ * thread-locals, so that they work equally well for virtual threads. The
+ * least recently used expressions are evicted beyond a maximum number;
+ * functions created earlier keep the pool of their expression.</p>
+ */
+final class XPathCache {
+
+    // the maximum number of expressions held
+    private static final int MAX_EXPRESSIONS = 256;
+    private static final int POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+    static final XPathCache SHARED = new XPathCache(MAX_EXPRESSIONS);
+
+    private final Pool<XPath> compilers = new Pool<>(
+            POOL_SIZE, () -> XPathFactory.newDefaultInstance().newXPath(), XPathCache::reset
+    );
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LruCache<String, Pool<XPathExpression>> expressions;
+
+    XPathCache(int maxExpressions) {
+        this.expressions = new LruCache<>(maxExpressions);
+    }
+
+    private static boolean reset(XPath xpath) {
+        xpath.reset();
+        return true;
+    }
+
+    /**
+     * The pool of compiled instances of the given expression, created and
+     * cached if need be.
+     *
+     * @param expression the expression
+     * @return the pool
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    Pool<XPathExpression> expression(String expression) {
+        lock.lock();
+        try {
+            var pool = expressions.get(expression);
+            if (pool != null) {
+                return pool;
+            }
+        } finally {
+            lock.unlock();
+        }
+        // compile once outside the lock, which validates the expression
+        var compiled = compile(expression);
+        var pool = new Pool<XPathExpression>(POOL_SIZE, () -> compile(expression), x -> true);
+        pool.release(compiled);
+        lock.lock();
+        try {
+            var present = expressions.get(expression);
+            if (present != null) {
+                return present;
+            }
+            expressions.put(expression, pool);
+            return pool;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private XPathExpression compile(String expression) {
+        var xpath = compilers.acquire();
+        try {
+            return xpath.compile(expression);
+        } catch (XPathExpressionException e) {
+            throw new IllegalArgumentException("invalid XPath expression: " + expression, e);
+        } finally {
+            compilers.release(xpath);
+        }
+    }
+
+    /**
+     * Evaluate an expression to the nodes it selects.
+     *
+     * @param pool    the pool of the expression
+     * @param context the context node
+     * @return the selected nodes in document order
+     * @throws XmlException if the evaluation fails
+     */
+    static Node[] nodes(Pool<XPathExpression> pool, Node context) {
+        var x = pool.acquire();
+        try {
+            var list = (NodeList) x.evaluate(context, XPathConstants.NODESET);
+            var nodes = new Node[list.getLength()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = list.item(i);
+            }
+            return nodes;
+        } catch (XPathExpressionException e) {
+            throw new XmlException(e);
+        } finally {
+            pool.release(x);
+        }
+    }
+
+    /**
+     * Evaluate an expression to the text of its result: the text content of
+     * the first node selected if it evaluates to a node set, or else the
+     * XPath string value of the number, string or boolean it evaluates to.
+     *
+     * @param pool    the pool of the expression
+     * @param context the context node
+     * @return the text, or {@code null} if the expression selects no node
+     * @throws XmlException if the evaluation fails
+     */
+    static @Nullable String text(Pool<XPathExpression> pool, Node context) {
+        var x = pool.acquire();
+        try {
+            var result = x.evaluateExpression(context, XPathEvaluationResult.class);
+            return switch (result.value()) {
+                case XPathNodes nodes -> nodes.size() == 0 ? null : nodes.get(0).getTextContent();
+                case Node node -> node.getTextContent();
+                case Double d -> number(d);
+                case null -> null;
+                case Object o -> o.toString();
+            };
+        } catch (XPathException e) {
+            throw new XmlException(e);
+        } finally {
+            pool.release(x);
+        }
+    }
+
+    // a number as spelled by XPath's string(): without an exponent, trailing
+    // zeros or a sign of zero, and NaN and the infinities as in Java
+    private static String number(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            return Double.toString(d);
+        }
+        if (d == 0) {
+            return "0";
+        }
+        // beyond the range of long, a cast would clamp
+        if (d == Math.rint(d) && Math.abs(d) < 0x1p63) {
+            return Long.toString((long) d);
+        }
+        return BigDecimal.valueOf(d).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * The number of expressions held.
+     *
+     * @return the number of expressions
+     */
+    int size() {
+        lock.lock();
+        try {
+            return expressions.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -10,8 +10,24 @@ import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.nio.file.Files;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
 
 /**
  * Convenience entry points for parsing XML into a {@link Document}.
@@ -31,19 +47,84 @@ import java.nio.file.Path;
  * parse or I/O failure; the original {@link SAXException} or
  * {@link IOException} is preserved as the cause.</p>
  *
+ * <p>Files are read through a {@link FileChannel}; files of at least
+ * {@value #MAPPING_THRESHOLD} bytes are memory-mapped and parsed straight
+ * from the mapped memory. Byte-oriented sources &mdash; streams, files,
+ * {@link ByteBuffer}s and {@link MemorySegment}s &mdash; are handed to the
+ * parser as bytes, which detects the encoding from the byte order mark or
+ * the XML declaration.</p>
+ *
+ * <p>Overloads taking {@link ParseOptions} select namespace awareness
+ * and may drop ignorable whitespace, comments and processing instructions,
+ * which shrinks pretty-printed documents considerably.</p>
+ *
+ * <p>The {@link DocumentBuilder}s used for parsing are pooled and
+ * {@linkplain DocumentBuilder#reset() reset} between uses, so that repeated
+ * parsing of small documents does not pay for a fresh builder each time.
+ * There is one pool per parser configuration. The maximum number of idle
+ * builders kept per pool defaults to twice the number of available
+ * processors and may be configured through the system property
+ * {@value #POOL_SIZE_PROPERTY}.</p>
+ *
  * <p>This class is not intended to be instantiated.</p>
  */
 public final class Xml {
 
-    private static final DocumentBuilderFactory DEFAULT_FACTORY = DocumentBuilderFactory.newDefaultInstance();
-    private static final DocumentBuilderFactory NAMESPACE_AWARE_FACTORY = namespaceAwareFactory();
+    /**
+     * The name of the system property holding the maximum number of idle
+     * {@link DocumentBuilder}s kept per pool.
+     */
+    public static final String POOL_SIZE_PROPERTY = "io.github.ralfspoeth.xmls.builderPoolSize";
+
+    /**
+     * The minimum size in bytes of a file to be memory-mapped rather than
+     * read through a stream.
+     */
+    public static final long MAPPING_THRESHOLD = 1L << 20;
 
-    private static DocumentBuilderFactory namespaceAwareFactory() {
+    /**
+     * The default maximum number of files parsed concurrently by
+     * {@link #parseAll(Stream)} and {@link #parseAll(Collection)}.
+     */
+    public static final int DEFAULT_PARALLELISM = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final int POOL_SIZE = Pool.sizeFromProperty(
+            POOL_SIZE_PROPERTY, 2 * Runtime.getRuntime().availableProcessors()
+    );
+
+    static final Pool<DocumentBuilder> DEFAULT_POOL = builderPool(factory(ParseOptions.DEFAULT));
+    static final Pool<DocumentBuilder> NAMESPACE_AWARE_POOL = builderPool(
+            factory(ParseOptions.DEFAULT.withNamespaceAware(true))
+    );
+
+    // pools by the options which determine the parser configuration
+    private static final ConcurrentMap<ParseOptions, Pool<DocumentBuilder>> POOLS = new ConcurrentHashMap<>(Map.of(
+            ParseOptions.DEFAULT, DEFAULT_POOL,
+            ParseOptions.DEFAULT.withNamespaceAware(true), NAMESPACE_AWARE_POOL
+    ));
+
+    // the Xerces feature which makes the parser build nodes on first access
+    private static final String DEFER_NODE_EXPANSION = "http://apache.org/xml/features/dom/defer-node-expansion";
+
+    private static DocumentBuilderFactory factory(ParseOptions options) {
         var f = DocumentBuilderFactory.newDefaultInstance();
-        f.setNamespaceAware(true);
+        f.setNamespaceAware(options.namespaceAware());
+        f.setIgnoringComments(options.dropComments());
+        f.setCoalescing(options.coalesceCData());
+        if (options.frozen()) {
+            try {
+                f.setFeature(DEFER_NODE_EXPANSION, false);
+            } catch (ParserConfigurationException e) {
+                // not Xerces; freeze() materializes whatever the parser defers
+            }
+        }
         return f;
     }
 
+    static Pool<DocumentBuilder> pool(ParseOptions options) {
+        return POOLS.computeIfAbsent(options.parserOptions(), o -> builderPool(factory(o)));
+    }
+
     // prevent instantiation
     private Xml() {}
 
@@ -55,14 +136,59 @@ public final class Xml {
         }
     }
 
-    private static Document parse(DocumentBuilderFactory factory, InputSource source) {
+    private static Pool<DocumentBuilder> builderPool(DocumentBuilderFactory factory) {
+        return new Pool<>(POOL_SIZE, () -> newBuilder(factory), Xml::reset);
+    }
+
+    private static boolean reset(DocumentBuilder builder) {
         try {
-            return newBuilder(factory).parse(source);
+            builder.reset();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            // the implementation cannot restore its initial state; don't reuse
+            return false;
+        }
+    }
+
+    private static Document parse(Pool<DocumentBuilder> pool, InputSource source) {
+        var builder = pool.acquire();
+        try {
+            return builder.parse(source);
         } catch (SAXException | IOException e) {
             throw new XmlException(e);
+        } finally {
+            pool.release(builder);
+        }
+    }
+
+    private static Document parse(Pool<DocumentBuilder> pool, Path path) {
+        try (var channel = FileChannel.open(path, READ)) {
+            var size = channel.size();
+            if (size >= MAPPING_THRESHOLD) {
+                try (var arena = Arena.ofConfined()) {
+                    return parse(pool, channel.map(READ_ONLY, 0, size, arena));
+                }
+            }
+            return parse(pool, new InputSource(Channels.newInputStream(channel)));
+        } catch (IOException e) {
+            throw new XmlException("Failed to read " + path, e);
         }
     }
 
+    private static Document parse(Pool<DocumentBuilder> pool, MemorySegment segment) {
+        return parse(pool, new InputSource(new SegmentInputStream(segment)));
+    }
+
+    private static Document parse(ParseOptions options, InputSource source) {
+        return finish(parse(pool(options), source), options);
+    }
+
+    // apply the options which take effect after parsing
+    private static Document finish(Document doc, ParseOptions options) {
+        NodeCleaner.clean(doc, options);
+        return options.frozen() ? freeze(doc) : doc;
+    }
+
     /**
      * Parse the given XML string into a {@link Document} (not namespace-aware).
      *
@@ -71,7 +197,7 @@ public final class Xml {
      * @throws XmlException if parsing fails
      */
     public static Document parse(CharSequence src) {
-        return parse(DEFAULT_FACTORY, new InputSource(Reader.of(src)));
+        return parse(DEFAULT_POOL, new InputSource(Reader.of(src)));
     }
 
     /**
@@ -83,7 +209,7 @@ public final class Xml {
      * @throws XmlException if parsing fails
      */
     public static Document parse(InputStream in) {
-        return parse(DEFAULT_FACTORY, new InputSource(in));
+        return parse(DEFAULT_POOL, new InputSource(in));
     }
 
     /**
@@ -95,7 +221,7 @@ public final class Xml {
      * @throws XmlException if parsing fails
      */
     public static Document parse(Reader reader) {
-        return parse(DEFAULT_FACTORY, new InputSource(reader));
+        return parse(DEFAULT_POOL, new InputSource(reader));
     }
 
     /**
@@ -106,11 +232,33 @@ public final class Xml {
      * @throws XmlException if parsing fails (including any underlying I/O error)
      */
     public static Document parse(Path path) {
-        try (var in = Files.newInputStream(path)) {
-            return parse(DEFAULT_FACTORY, new InputSource(in));
-        } catch (IOException e) {
-            throw new XmlException("Failed to read " + path, e);
-        }
+        return parse(DEFAULT_POOL, path);
+    }
+
+    /**
+     * Parse the bytes between the given buffer's position and its limit
+     * into a {@link Document} (not namespace-aware). The buffer may be
+     * direct or heap-backed; its position is left unchanged.
+     *
+     * @param buffer the buffer holding the encoded XML; must not be {@code null}
+     * @return the parsed document
+     * @throws XmlException if parsing fails
+     */
+    public static Document parse(ByteBuffer buffer) {
+        return parse(DEFAULT_POOL, MemorySegment.ofBuffer(buffer));
+    }
+
+    /**
+     * Parse the bytes of the given memory segment into a {@link Document}
+     * (not namespace-aware). The segment must be accessible from the
+     * calling thread for the duration of the call.
+     *
+     * @param segment the segment holding the encoded XML; must not be {@code null}
+     * @return the parsed document
+     * @throws XmlException if parsing fails
+     */
+    public static Document parse(MemorySegment segment) {
+        return parse(DEFAULT_POOL, segment);
     }
 
     /**
@@ -121,7 +269,7 @@ public final class Xml {
      * @throws XmlException if parsing fails
      */
     public static Document parseNameSpaced(CharSequence src) {
-        return parse(NAMESPACE_AWARE_FACTORY, new InputSource(Reader.of(src)));
+        return parse(NAMESPACE_AWARE_POOL, new InputSource(Reader.of(src)));
     }
 
     /**
@@ -132,7 +280,7 @@ public final class Xml {
      * @throws XmlException if parsing fails
      */
     public static Document parseNameSpaced(InputStream in) {
-        return parse(NAMESPACE_AWARE_FACTORY, new InputSource(in));
+        return parse(NAMESPACE_AWARE_POOL, new InputSource(in));
     }
 
     /**
@@ -143,7 +291,7 @@ public final class Xml {
      * @throws XmlException if parsing fails
      */
     public static Document parseNameSpaced(Reader reader) {
-        return parse(NAMESPACE_AWARE_FACTORY, new InputSource(reader));
+        return parse(NAMESPACE_AWARE_POOL, new InputSource(reader));
     }
 
     /**
@@ -154,10 +302,229 @@ public final class Xml {
      * @throws XmlException if parsing fails (including any underlying I/O error)
      */
     public static Document parseNameSpaced(Path path) {
-        try (var in = Files.newInputStream(path)) {
-            return parse(NAMESPACE_AWARE_FACTORY, new InputSource(in));
-        } catch (IOException e) {
-            throw new XmlException("Failed to read " + path, e);
-        }
+        return parse(NAMESPACE_AWARE_POOL, path);
+    }
+
+    /**
+     * Namespace-aware version of {@link #parse(ByteBuffer)}.
+     *
+     * @param buffer the buffer holding the encoded XML; must not be {@code null}
+     * @return the parsed document
+     * @throws XmlException if parsing fails
+     */
+    public static Document parseNameSpaced(ByteBuffer buffer) {
+        return parse(NAMESPACE_AWARE_POOL, MemorySegment.ofBuffer(buffer));
+    }
+
+    /**
+     * Namespace-aware version of {@link #parse(MemorySegment)}.
+     *
+     * @param segment the segment holding the encoded XML; must not be {@code null}
+     * @return the parsed document
+     * @throws XmlException if parsing fails
+     */
+    public static Document parseNameSpaced(MemorySegment segment) {
+        return parse(NAMESPACE_AWARE_POOL, segment);
+    }
+
+    /**
+     * Parse the given XML string into a {@link Document} as specified by
+     * the given options.
+     *
+     * @param src     the XML source text; must not be {@code null}
+     * @param options the parse options
+     * @return the parsed document
+     * @throws XmlException if parsing fails
+     */
+    public static Document parse(CharSequence src, ParseOptions options) {
+        return parse(options, new InputSource(Reader.of(src)));
+    }
+
+    /**
+     * Parse the given input stream into a {@link Document} as specified by
+     * the given options. The caller retains responsibility for closing the stream.
+     *
+     * @param in      the input stream; must not be {@code null}
+     * @param options the parse options
+     * @return the parsed document
+     * @throws XmlException if parsing fails
+     */
+    public static Document parse(InputStream in, ParseOptions options) {
+        return parse(options, new InputSource(in));
+    }
+
+    /**
+     * Parse the given reader into a {@link Document} as specified by the
+     * given options. The caller retains responsibility for closing the reader.
+     *
+     * @param reader  the reader; must not be {@code null}
+     * @param options the parse options
+     * @return the parsed document
+     * @throws XmlException if parsing fails
+     */
+    public static Document parse(Reader reader, ParseOptions options) {
+        return parse(options, new InputSource(reader));
+    }
+
+    /**
+     * Parse the file at the given path into a {@link Document} as specified
+     * by the given options.
+     *
+     * @param path    the file path; must not be {@code null}
+     * @param options the parse options
+     * @return the parsed document
+     * @throws XmlException if parsing fails (including any underlying I/O error)
+     */
+    public static Document parse(Path path, ParseOptions options) {
+        return finish(parse(pool(options), path), options);
+    }
+
+    /**
+     * Parse the bytes between the given buffer's position and its limit
+     * into a {@link Document} as specified by the given options.
+     *
+     * @param buffer  the buffer holding the encoded XML; must not be {@code null}
+     * @param options the parse options
+     * @return the parsed document
+     * @throws XmlException if parsing fails
+     */
+    public static Document parse(ByteBuffer buffer, ParseOptions options) {
+        return parse(MemorySegment.ofBuffer(buffer), options);
+    }
+
+    /**
+     * Parse the bytes of the given memory segment into a {@link Document}
+     * as specified by the given options.
+     *
+     * @param segment the segment holding the encoded XML; must not be {@code null}
+     * @param options the parse options
+     * @return the parsed document
+     * @throws XmlException if parsing fails
+     */
+    public static Document parse(MemorySegment segment, ParseOptions options) {
+        return finish(parse(pool(options), segment), options);
+    }
+
+    /**
+     * Turn the given document into a snapshot which may be read from many
+     * threads at once.
+     *
+     * <p>The DOM of the JDK builds nodes lazily: the parser records the
+     * document in compact tables, and each node fills in its children,
+     * attributes and data when it is first accessed. Even reading such a
+     * document modifies it, and concurrent reads race. This method visits
+     * every node, attribute and attribute value once, in place, after which
+     * all methods of {@link XmlStreams} and {@link XmlFunctions} only read
+     * the document. The same holds for the node accessors of the DOM
+     * ({@link org.w3c.dom.Node#getFirstChild()},
+     * {@link org.w3c.dom.Node#getNextSibling()},
+     * {@link org.w3c.dom.Element#getAttribute(String)} and the like), but not
+     * for {@link org.w3c.dom.NodeList}s such as those returned by
+     * {@link org.w3c.dom.Node#getChildNodes()}, which cache their position,
+     * and of course not for any method modifying the document.</p>
+     *
+     * <p>Parsing with {@link ParseOptions#withFrozen(boolean) frozen}
+     * options builds the complete document right away and freezes it.</p>
+     *
+     * @param doc the document
+     * @return the given document
+     */
+    public static Document freeze(Document doc) {
+        return Materializer.materialize(doc);
+    }
+
+    private static Stream<ParseResult> parseAll(
+            Stream<? extends Path> paths, Function<Path, Document> parser, int parallelism, boolean ordered
+    ) {
+        var batch = new BatchParser(paths.iterator(), parser, parallelism, ordered);
+        var characteristics = Spliterator.NONNULL | (ordered ? Spliterator.ORDERED : 0);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batch, characteristics), false)
+                .onClose(batch::close)
+                .onClose(paths::close);
+    }
+
+    /**
+     * Parse the files at the given paths concurrently on virtual threads
+     * (not namespace-aware), keeping at most {@code parallelism} files in
+     * flight at any time.
+     *
+     * <p>The paths are pulled lazily from the given stream; reading and
+     * parsing of up to {@code parallelism} files runs ahead of the consumer.
+     * Each file yields exactly one {@link ParseResult}; a file that cannot be
+     * read or parsed yields a failed result and does not abort the batch.
+     * The returned stream is sequential. Closing it cancels all files still
+     * in flight and closes the given stream; use it in a
+     * try-with-resources statement if it may not be consumed completely.</p>
+     *
+     * @param paths       the files to parse; must not be {@code null}
+     * @param parallelism the maximum number of files parsed concurrently; must be positive
+     * @param ordered     {@code true} to report the results in the order of the
+     *                    given paths, {@code false} to report them as soon as
+     *                    they are complete
+     * @return a stream of parse results
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public static Stream<ParseResult> parseAll(Stream<? extends Path> paths, int parallelism, boolean ordered) {
+        return parseAll(paths, Xml::parse, parallelism, ordered);
+    }
+
+    /**
+     * Parse the files at the given paths concurrently, reporting the results
+     * in the order of the given paths, with at most
+     * {@link #DEFAULT_PARALLELISM} files in flight.
+     *
+     * @param paths the files to parse; must not be {@code null}
+     * @return a stream of parse results
+     * @see #parseAll(Stream, int, boolean)
+     */
+    public static Stream<ParseResult> parseAll(Stream<? extends Path> paths) {
+        return parseAll(paths, DEFAULT_PARALLELISM, true);
+    }
+
+    /**
+     * Parse the files at the given paths concurrently, reporting the results
+     * in the iteration order of the given collection, with at most
+     * {@link #DEFAULT_PARALLELISM} files in flight.
+     *
+     * @param paths the files to parse; must not be {@code null}
+     * @return a stream of parse results
+     * @see #parseAll(Stream, int, boolean)
+     */
+    public static Stream<ParseResult> parseAll(Collection<? extends Path> paths) {
+        return parseAll(paths.stream());
+    }
+
+    /**
+     * Namespace-aware version of {@link #parseAll(Stream, int, boolean)}.
+     *
+     * @param paths       the files to parse; must not be {@code null}
+     * @param parallelism the maximum number of files parsed concurrently; must be positive
+     * @param ordered     {@code true} to report the results in the order of the
+     *                    given paths, {@code false} to report them as soon as
+     *                    they are complete
+     * @return a stream of parse results
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public static Stream<ParseResult> parseAllNameSpaced(Stream<? extends Path> paths, int parallelism, boolean ordered) {
+        return parseAll(paths, Xml::parseNameSpaced, parallelism, ordered);
+    }
+
+    /**
+     * Version of {@link #parseAll(Stream, int, boolean)} parsing each file
+     * as specified by the given options.
+     *
+     * @param paths       the files to parse; must not be {@code null}
+     * @param parallelism the maximum number of files parsed concurrently; must be positive
+     * @param ordered     {@code true} to report the results in the order of the
+     *                    given paths, {@code false} to report them as soon as
+     *                    they are complete
+     * @param options     the parse options
+     * @return a stream of parse results
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public static Stream<ParseResult> parseAll(
+            Stream<? extends Path> paths, int parallelism, boolean ordered, ParseOptions options
+    ) {
+        return parseAll(paths, path -> parse(path, options), parallelism, ordered);
     }
 }
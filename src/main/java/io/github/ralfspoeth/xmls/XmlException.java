@@ -1,10 +1,12 @@
 package io.github.ralfspoeth.xmls;
 
 /**
- * Unchecked exception thrown by {@link Xml} when XML parsing or I/O fails.
+ * Unchecked exception thrown by {@link Xml} and {@link XmlStreams} when XML
+ * parsing or I/O fails.
  *
  * <p>The underlying cause &mdash; typically a
- * {@link org.xml.sax.SAXException} or a {@link java.io.IOException} &mdash;
+ * {@link org.xml.sax.SAXException}, a
+ * {@link javax.xml.stream.XMLStreamException} or a {@link java.io.IOException} &mdash;
  * is always preserved via {@link #getCause()}.</p>
  */
 public class XmlException extends RuntimeException {
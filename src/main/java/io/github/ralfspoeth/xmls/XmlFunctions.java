@@ -10,11 +10,14 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.OptionalDouble;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import static java.util.Optional.ofNullable;
@@ -92,26 +95,50 @@ public class XmlFunctions {
      * {@link Element}s whose node name equals {@code name}
      */
     public static Function<Node, Stream<Element>> elements(String name) {
-        return n -> XmlStreams.childNodes(n)
-                .filter(Element.class::isInstance)
-                .filter(e -> e.getNodeName().equals(name))
-                .map(Element.class::cast);
+        return elements(NameMatcher.of(name));
     }
 
     /**
-     * Same as {@link #elements(String)} but with a namespace URI.
+     * Same as {@link #elements(String)} but with a namespace URI, matched like
+     * {@link NameMatcher#of(String, String)}.
      *
-     * @param ns        the namespace URI
+     * @param ns        the namespace URI; the empty string matches elements in no namespace
      * @param localName the local name
      * @return a function that, when applied to a node, returns a stream of its child
      * {@link Element}s with the given namespace URI and local name
      */
     public static Function<Node, Stream<Element>> elements(String ns, String localName) {
-        return n -> XmlStreams.childNodes(n)
-                .filter(Element.class::isInstance)
-                .map(Element.class::cast)
-                .filter(e -> localName.equals(e.getLocalName()))
-                .filter(e -> ns.equals(e.getNamespaceURI()));
+        return elements(NameMatcher.of(ns, localName));
+    }
+
+    /**
+     * Same as {@link #elements(String)} but with a precompiled matcher.
+     *
+     * @param matcher the names to match
+     * @return a function that, when applied to a node, returns a stream of its child
+     * {@link Element}s accepted by the matcher
+     */
+    public static Function<Node, Stream<Element>> elements(NameMatcher matcher) {
+        return n -> XmlStreams.children(n, matcher);
+    }
+
+    /**
+     * Obtain a function which returns the elements selected by the given
+     * path expression relative to the given node; to be used with
+     * {@link Stream#flatMap(Function)}. The expression is compiled once.
+     *
+     * @param expression the path expression, see {@link XmlPath}
+     * @return a function that, when applied to a node, returns a stream of
+     * the selected {@link Element}s in document order
+     * @throws IllegalArgumentException if the expression is not valid or
+     *                                  selects attributes
+     */
+    public static Function<Node, Stream<Element>> path(String expression) {
+        var path = XmlPath.compile(expression);
+        if (path.selectsAttributes()) {
+            throw new IllegalArgumentException("path selects attributes: " + expression);
+        }
+        return path::elements;
     }
 
     /**
@@ -123,7 +150,8 @@ public class XmlFunctions {
      * matching children
      */
     public static Function<Node, Stream<Node>> childrenNamed(String name) {
-        return n -> XmlStreams.childNodes(n).filter(e -> e.getNodeName().equals(name));
+        Predicate<Node> matcher = n -> name.equals(n.getNodeName());
+        return n -> XmlStreams.children(n, matcher);
     }
 
     /**
@@ -135,11 +163,21 @@ public class XmlFunctions {
      * @throws NumberFormatException if the attribute value is non-null but not a valid {@code int}
      */
     public static OptionalInt intValue(@Nullable Attr attribute) {
-        return ofNullable(attribute)
-                .map(Attr::getValue)
-                .stream()
-                .mapToInt(Integer::parseInt)
-                .findAny();
+        return attribute == null ? OptionalInt.empty() : OptionalInt.of(Integer.parseInt(attribute.getValue()));
+    }
+
+    /**
+     * Parse into an {@code int} value, or return the given default if the
+     * attribute is missing. Unlike {@link #intValue(Attr)}, this method
+     * allocates nothing.
+     *
+     * @param attribute    the attribute to read; may be {@code null}
+     * @param defaultValue the value returned if {@code attribute} is {@code null}
+     * @return the parsed value, or {@code defaultValue} if {@code attribute} is {@code null}
+     * @throws NumberFormatException if the attribute value is non-null but not a valid {@code int}
+     */
+    public static int intValueOr(@Nullable Attr attribute, int defaultValue) {
+        return attribute == null ? defaultValue : Integer.parseInt(attribute.getValue());
     }
 
     /**
@@ -151,11 +189,21 @@ public class XmlFunctions {
      * @throws NumberFormatException if the attribute value is non-null but not a valid {@code long}
      */
     public static OptionalLong longValue(@Nullable Attr attribute) {
-        return ofNullable(attribute)
-                .map(Attr::getValue)
-                .stream()
-                .mapToLong(Long::parseLong)
-                .findAny();
+        return attribute == null ? OptionalLong.empty() : OptionalLong.of(Long.parseLong(attribute.getValue()));
+    }
+
+    /**
+     * Parse into a {@code long} value, or return the given default if the
+     * attribute is missing. Unlike {@link #longValue(Attr)}, this method
+     * allocates nothing.
+     *
+     * @param attribute    the attribute to read; may be {@code null}
+     * @param defaultValue the value returned if {@code attribute} is {@code null}
+     * @return the parsed value, or {@code defaultValue} if {@code attribute} is {@code null}
+     * @throws NumberFormatException if the attribute value is non-null but not a valid {@code long}
+     */
+    public static long longValueOr(@Nullable Attr attribute, long defaultValue) {
+        return attribute == null ? defaultValue : Long.parseLong(attribute.getValue());
     }
 
     /**
@@ -167,11 +215,21 @@ public class XmlFunctions {
      * @throws NumberFormatException if the attribute value is non-null but not a valid {@code double}
      */
     public static OptionalDouble doubleValue(@Nullable Attr attribute) {
-        return ofNullable(attribute)
-                .map(Attr::getValue)
-                .stream()
-                .mapToDouble(Double::parseDouble)
-                .findAny();
+        return attribute == null ? OptionalDouble.empty() : OptionalDouble.of(Double.parseDouble(attribute.getValue()));
+    }
+
+    /**
+     * Parse into a {@code double} value, or return the given default if the
+     * attribute is missing. Unlike {@link #doubleValue(Attr)}, this method
+     * allocates nothing.
+     *
+     * @param attribute    the attribute to read; may be {@code null}
+     * @param defaultValue the value returned if {@code attribute} is {@code null}
+     * @return the parsed value, or {@code defaultValue} if {@code attribute} is {@code null}
+     * @throws NumberFormatException if the attribute value is non-null but not a valid {@code double}
+     */
+    public static double doubleValueOr(@Nullable Attr attribute, double defaultValue) {
+        return attribute == null ? defaultValue : Double.parseDouble(attribute.getValue());
     }
 
     /**
@@ -207,7 +265,7 @@ public class XmlFunctions {
     public static Optional<LocalDate> dateValue(@Nullable Attr attribute) {
         return ofNullable(attribute)
                 .map(Attr::getValue)
-                .map(LocalDate::parse);
+                .map(Lexical::parseDate);
     }
 
     /**
@@ -223,7 +281,7 @@ public class XmlFunctions {
     public static Optional<LocalDateTime> dateTimeValue(@Nullable Attr attribute) {
         return ofNullable(attribute)
                 .map(Attr::getValue)
-                .map(LocalDateTime::parse);
+                .map(Lexical::parseDateTime);
     }
 
     /**
@@ -239,7 +297,7 @@ public class XmlFunctions {
     public static Optional<OffsetDateTime> offsetDateTimeValue(@Nullable Attr attribute) {
         return ofNullable(attribute)
                 .map(Attr::getValue)
-                .map(OffsetDateTime::parse);
+                .map(Lexical::parseOffsetDateTime);
     }
 
     /**
@@ -254,7 +312,7 @@ public class XmlFunctions {
     public static Optional<ZonedDateTime> zonedDateTimeValue(@Nullable Attr attribute) {
         return ofNullable(attribute)
                 .map(Attr::getValue)
-                .map(ZonedDateTime::parse);
+                .map(Lexical::parseZonedDateTime);
     }
 
     /**
@@ -271,11 +329,7 @@ public class XmlFunctions {
     public static Optional<Boolean> booleanValue(@Nullable Attr attribute) {
         return ofNullable(attribute)
                 .map(Attr::getValue)
-                .map(v -> switch (v) {
-                    case "true", "1" -> Boolean.TRUE;
-                    case "false", "0" -> Boolean.FALSE;
-                    default -> throw new IllegalArgumentException("Not a valid xs:boolean literal: " + v);
-                });
+                .map(Lexical::parseBoolean);
     }
 
     // ---------------------------------------------------------------------
@@ -305,7 +359,23 @@ public class XmlFunctions {
      * @throws NumberFormatException if the text content is non-null but not a valid {@code int}
      */
     public static OptionalInt intContent(@Nullable Element element) {
-        return text(element).stream().mapToInt(Integer::parseInt).findAny();
+        return element == null ? OptionalInt.empty() : OptionalInt.of(Lexical.parseIntTrimmed(element.getTextContent()));
+    }
+
+    /**
+     * Parse the element's text content into an {@code int} value, or return
+     * the given default if the element is missing. The text content is parsed
+     * in place, without trimming it into a new string; unlike
+     * {@link #intContent(Element)}, this method allocates nothing beyond what
+     * {@link Node#getTextContent()} requires.
+     *
+     * @param element      the element to read; may be {@code null}
+     * @param defaultValue the value returned if {@code element} is {@code null}
+     * @return the parsed value, or {@code defaultValue} if {@code element} is {@code null}
+     * @throws NumberFormatException if the text content is non-null but not a valid {@code int}
+     */
+    public static int intContentOr(@Nullable Element element, int defaultValue) {
+        return element == null ? defaultValue : Lexical.parseIntTrimmed(element.getTextContent());
     }
 
     /**
@@ -316,7 +386,21 @@ public class XmlFunctions {
      * @throws NumberFormatException if the text content is non-null but not a valid {@code long}
      */
     public static OptionalLong longContent(@Nullable Element element) {
-        return text(element).stream().mapToLong(Long::parseLong).findAny();
+        return element == null ? OptionalLong.empty() : OptionalLong.of(Lexical.parseLongTrimmed(element.getTextContent()));
+    }
+
+    /**
+     * Parse the element's text content into a {@code long} value, or return
+     * the given default if the element is missing; see
+     * {@link #intContentOr(Element, int)}.
+     *
+     * @param element      the element to read; may be {@code null}
+     * @param defaultValue the value returned if {@code element} is {@code null}
+     * @return the parsed value, or {@code defaultValue} if {@code element} is {@code null}
+     * @throws NumberFormatException if the text content is non-null but not a valid {@code long}
+     */
+    public static long longContentOr(@Nullable Element element, long defaultValue) {
+        return element == null ? defaultValue : Lexical.parseLongTrimmed(element.getTextContent());
     }
 
     /**
@@ -327,7 +411,21 @@ public class XmlFunctions {
      * @throws NumberFormatException if the text content is non-null but not a valid {@code double}
      */
     public static OptionalDouble doubleContent(@Nullable Element element) {
-        return text(element).stream().mapToDouble(Double::parseDouble).findAny();
+        return element == null ? OptionalDouble.empty() : OptionalDouble.of(Lexical.parseDoubleTrimmed(element.getTextContent()));
+    }
+
+    /**
+     * Parse the element's text content into a {@code double} value, or return
+     * the given default if the element is missing; see
+     * {@link #intContentOr(Element, int)}.
+     *
+     * @param element      the element to read; may be {@code null}
+     * @param defaultValue the value returned if {@code element} is {@code null}
+     * @return the parsed value, or {@code defaultValue} if {@code element} is {@code null}
+     * @throws NumberFormatException if the text content is non-null but not a valid {@code double}
+     */
+    public static double doubleContentOr(@Nullable Element element, double defaultValue) {
+        return element == null ? defaultValue : Lexical.parseDoubleTrimmed(element.getTextContent());
     }
 
     /**
@@ -363,7 +461,7 @@ public class XmlFunctions {
      * @throws java.time.format.DateTimeParseException if the text content is non-null but cannot be parsed
      */
     public static Optional<LocalDate> dateContent(@Nullable Element element) {
-        return text(element).map(LocalDate::parse);
+        return text(element).map(Lexical::parseDate);
     }
 
     /**
@@ -375,7 +473,7 @@ public class XmlFunctions {
      * @throws java.time.format.DateTimeParseException if the text content is non-null but cannot be parsed
      */
     public static Optional<LocalDateTime> dateTimeContent(@Nullable Element element) {
-        return text(element).map(LocalDateTime::parse);
+        return text(element).map(Lexical::parseDateTime);
     }
 
     /**
@@ -386,7 +484,7 @@ public class XmlFunctions {
      * @throws java.time.format.DateTimeParseException if the text content is non-null but cannot be parsed
      */
     public static Optional<OffsetDateTime> offsetDateTimeContent(@Nullable Element element) {
-        return text(element).map(OffsetDateTime::parse);
+        return text(element).map(Lexical::parseOffsetDateTime);
     }
 
     /**
@@ -397,7 +495,7 @@ public class XmlFunctions {
      * @throws java.time.format.DateTimeParseException if the text content is non-null but cannot be parsed
      */
     public static Optional<ZonedDateTime> zonedDateTimeContent(@Nullable Element element) {
-        return text(element).map(ZonedDateTime::parse);
+        return text(element).map(Lexical::parseZonedDateTime);
     }
 
     /**
@@ -411,10 +509,209 @@ public class XmlFunctions {
      *                                  {@code xs:boolean} literal
      */
     public static Optional<Boolean> booleanContent(@Nullable Element element) {
-        return text(element).map(v -> switch (v) {
-            case "true", "1" -> Boolean.TRUE;
-            case "false", "0" -> Boolean.FALSE;
-            default -> throw new IllegalArgumentException("Not a valid xs:boolean literal: " + v);
-        });
+        return text(element).map(Lexical::parseBoolean);
+    }
+
+    // ---------------------------------------------------------------------
+    // XPath navigators, compiled once and cached
+    // ---------------------------------------------------------------------
+
+    /**
+     * Obtain a function which returns the nodes selected by the given XPath
+     * expression relative to the given node; to be used with
+     * {@link Stream#flatMap(Function)}.
+     *
+     * <p>The expression is compiled when this method is called, not when the
+     * function is applied. Compiled expressions are held in a bounded cache
+     * shared by all XPath functions, so that creating a function for the same
+     * expression again is cheap, and are evaluated by pooled instances, so
+     * that the function may be applied by many threads at once. Namespace
+     * prefixes, variables and custom functions are not supported; for
+     * expressions in the subset of {@link XmlPath}, a compiled path is
+     * considerably faster.</p>
+     *
+     * @param expression the XPath expression
+     * @return a function that, when applied to a node, returns a stream of the
+     * selected nodes in document order
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static Function<Node, Stream<Node>> xpath(String expression) {
+        var pool = XPathCache.SHARED.expression(expression);
+        return n -> Arrays.stream(XPathCache.nodes(pool, n));
+    }
+
+    /**
+     * Obtain a function which returns the trimmed text content of the first
+     * node selected by the given XPath expression, see {@link #xpath(String)}.
+     *
+     * <p>An expression which evaluates to a number, string or boolean, such
+     * as {@code count(item)}, yields its XPath string value instead: numbers
+     * are spelled without an exponent, and integral numbers without a
+     * fractional part. The typed variants below parse the same text.</p>
+     *
+     * @param expression the XPath expression
+     * @return a function that, when applied to a node, returns the trimmed text
+     * content, or an empty optional if the expression selects no node
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static Function<Node, Optional<String>> xpathText(String expression) {
+        var pool = XPathCache.SHARED.expression(expression);
+        return n -> ofNullable(XPathCache.text(pool, n)).map(String::trim);
+    }
+
+    /**
+     * Obtain a function which parses the text content of the first node
+     * selected by the given XPath expression into an optional {@code int}
+     * value, like {@link #intContent(Element)}.
+     *
+     * @param expression the XPath expression
+     * @return a function that, when applied to a node, returns the parsed value,
+     * or an empty optional if the expression selects no node
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static Function<Node, OptionalInt> xpathInt(String expression) {
+        var pool = XPathCache.SHARED.expression(expression);
+        return n -> {
+            var s = XPathCache.text(pool, n);
+            return s == null ? OptionalInt.empty() : OptionalInt.of(Lexical.parseIntTrimmed(s));
+        };
+    }
+
+    /**
+     * Obtain a function which parses the text content of the first node
+     * selected by the given XPath expression into an optional {@code long}
+     * value, like {@link #longContent(Element)}.
+     *
+     * @param expression the XPath expression
+     * @return a function that, when applied to a node, returns the parsed value,
+     * or an empty optional if the expression selects no node
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static Function<Node, OptionalLong> xpathLong(String expression) {
+        var pool = XPathCache.SHARED.expression(expression);
+        return n -> {
+            var s = XPathCache.text(pool, n);
+            return s == null ? OptionalLong.empty() : OptionalLong.of(Lexical.parseLongTrimmed(s));
+        };
+    }
+
+    /**
+     * Obtain a function which parses the text content of the first node
+     * selected by the given XPath expression into an optional {@code double}
+     * value, like {@link #doubleContent(Element)}.
+     *
+     * @param expression the XPath expression
+     * @return a function that, when applied to a node, returns the parsed value,
+     * or an empty optional if the expression selects no node
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static Function<Node, OptionalDouble> xpathDouble(String expression) {
+        var pool = XPathCache.SHARED.expression(expression);
+        return n -> {
+            var s = XPathCache.text(pool, n);
+            return s == null ? OptionalDouble.empty() : OptionalDouble.of(Lexical.parseDoubleTrimmed(s));
+        };
+    }
+
+    /**
+     * Obtain a function which parses the text content of the first node
+     * selected by the given XPath expression into an optional
+     * {@link BigDecimal} value, like {@link #decimalContent(Element)}.
+     *
+     * @param expression the XPath expression
+     * @return a function that, when applied to a node, returns the parsed value,
+     * or an empty optional if the expression selects no node
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static Function<Node, Optional<BigDecimal>> xpathDecimal(String expression) {
+        return xpathText(expression).andThen(s -> s.map(BigDecimal::new));
+    }
+
+    /**
+     * Obtain a function which parses the text content of the first node
+     * selected by the given XPath expression into an optional
+     * {@link LocalDate} value, like {@link #dateContent(Element)}.
+     *
+     * @param expression the XPath expression
+     * @return a function that, when applied to a node, returns the parsed value,
+     * or an empty optional if the expression selects no node
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static Function<Node, Optional<LocalDate>> xpathDate(String expression) {
+        return xpathText(expression).andThen(s -> s.map(Lexical::parseDate));
+    }
+
+    /**
+     * Obtain a function which parses the text content of the first node
+     * selected by the given XPath expression into an optional
+     * {@link LocalDateTime} value, like {@link #dateTimeContent(Element)}.
+     *
+     * @param expression the XPath expression
+     * @return a function that, when applied to a node, returns the parsed value,
+     * or an empty optional if the expression selects no node
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static Function<Node, Optional<LocalDateTime>> xpathDateTime(String expression) {
+        return xpathText(expression).andThen(s -> s.map(Lexical::parseDateTime));
+    }
+
+    /**
+     * Obtain a function which parses the text content of the first node
+     * selected by the given XPath expression into an optional
+     * {@link Boolean} value, like {@link #booleanContent(Element)}.
+     *
+     * @param expression the XPath expression
+     * @return a function that, when applied to a node, returns the parsed value,
+     * or an empty optional if the expression selects no node
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static Function<Node, Optional<Boolean>> xpathBoolean(String expression) {
+        return xpathText(expression).andThen(s -> s.map(Lexical::parseBoolean));
+    }
+
+    /**
+     * Memoize the given navigator, such as {@link #elements(String)}: the
+     * elements it returns for a node are collected into a list once, and
+     * the list is streamed on each later application to the same node.
+     *
+     * <p>Results are cached per node identity, at most {@code maxEntries}
+     * per document, the least recently used being evicted first. The cache
+     * of a document is attached to it as user data and becomes unreachable
+     * along with it; nodes without an owner document are not cached. The
+     * returned function may be used by several threads at once; it should
+     * be created once and shared, since each function caches separately.
+     * The results reflect each document at the time they were cached, so
+     * documents must not be modified while memoized functions are applied
+     * to them.</p>
+     *
+     * @param navigator  the navigator
+     * @param maxEntries the maximum number of results held per document
+     * @return a function that returns the same elements as the navigator
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    public static Function<Node, Stream<Element>> memoize(
+            Function<? super Node, ? extends Stream<? extends Element>> navigator, int maxEntries
+    ) {
+        var memo = new NodeMemo<Node, List<Element>>(
+                n -> navigator.apply(n).<Element>map(Element.class::cast).toList(), maxEntries
+        );
+        return n -> memo.apply(n).stream();
+    }
+
+    /**
+     * Memoize the given function of nodes, such as
+     * {@link #attributeValue(String)} or {@link #xpathInt(String)}, like
+     * {@link #memoize(Function, int)}; the results are returned as they
+     * are, and {@code null} results are not cached.
+     *
+     * @param function   the function
+     * @param maxEntries the maximum number of results held per document
+     * @param <N>        the type of the nodes
+     * @param <R>        the type of the results
+     * @return a function that returns the same results as the given function
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    public static <N extends Node, R> Function<N, R> memoizeValue(Function<? super N, ? extends R> function, int maxEntries) {
+        return new NodeMemo<>(function, maxEntries);
     }
 }
@@ -0,0 +1,350 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A compiled path expression which selects elements or attributes relative
+ * to a node, such as {@code order/line}, {@code //item[@type='x']} or
+ * {@code config/db/@url}.
+ *
+ * <p>The syntax is a small subset of XPath:</p>
+ * <ul>
+ *   <li>a path is a sequence of element steps separated by {@code /},
+ *       which selects the children of the elements selected so far, or
+ *       {@code //}, which selects their descendants;</li>
+ *   <li>a step is a qualified name, compared like
+ *       {@link Element#getTagName()}, or {@code *} for any element,
+ *       followed by any number of predicates {@code [@name]}, which
+ *       requires the attribute to be present, or {@code [@name='value']}
+ *       (or with double quotes), which requires it to have the value;</li>
+ *   <li>a path starting with {@code /} or {@code //} is absolute and
+ *       evaluated from the document of the node, a path starting with
+ *       {@code .} or a step is relative and evaluated from the node
+ *       itself;</li>
+ *   <li>a path may end with an attribute step {@code @name} or {@code @*}
+ *       following a {@code /}, which selects the attributes of the elements
+ *       selected so far.</li>
+ * </ul>
+ *
+ * <p>A path is evaluated in a single traversal of the subtree of the
+ * context node rather than as a chain of streams per step: the traversal
+ * keeps, for each level of the tree, the set of steps the elements on
+ * that level may match, and descends only into subtrees some step may
+ * still match. Matching elements are reported lazily, in document order
+ * and without duplicates, and nothing is allocated per node visited.
+ * Compile a path once and share it: instances are immutable and
+ * thread-safe.</p>
+ */
+public final class XmlPath {
+
+    /**
+     * An attribute predicate of a step.
+     *
+     * @param name  the qualified name of the attribute
+     * @param value the value required, or {@code null} if any value will do
+     */
+    record Condition(String name, @Nullable String value) {}
+
+    /**
+     * An element step.
+     *
+     * @param descendant whether the step selects descendants rather than children
+     * @param name       the qualified name, or {@code null} for any element
+     * @param conditions the attribute predicates
+     */
+    record Step(boolean descendant, @Nullable String name, List<Condition> conditions) {
+
+        boolean matches(Element e) {
+            if (name != null && !name.equals(e.getTagName())) {
+                return false;
+            }
+            for (int i = 0; i < conditions.size(); i++) {
+                var c = conditions.get(i);
+                var attr = e.getAttributeNode(c.name());
+                var value = c.value();
+                if (attr == null || value != null && !value.equals(attr.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // bits of a long, one per step and one for the context node
+    private static final int MAX_STEPS = Long.SIZE - 1;
+
+    private final String expression;
+    private final boolean absolute;
+    private final Step[] steps;
+    // the qualified name of the final attribute step, "*" for any, or null if there is none
+    private final @Nullable String attribute;
+
+    private XmlPath(String expression, boolean absolute, List<Step> steps, @Nullable String attribute) {
+        this.expression = expression;
+        this.absolute = absolute;
+        this.steps = steps.toArray(Step[]::new);
+        this.attribute = attribute;
+    }
+
+    /**
+     * Compile the given path expression.
+     *
+     * @param expression the expression
+     * @return the compiled path
+     * @throws IllegalArgumentException if the expression is not valid or
+     *                                  has more than 63 steps
+     */
+    public static XmlPath compile(String expression) {
+        return new Parser(expression).parse();
+    }
+
+    /**
+     * Whether this path is absolute, that is evaluated from the document
+     * rather than from the context node.
+     *
+     * @return {@code true} if the path starts with {@code /}
+     */
+    public boolean absolute() {
+        return absolute;
+    }
+
+    /**
+     * Whether this path ends with an attribute step.
+     *
+     * @return {@code true} if the path selects attributes
+     */
+    public boolean selectsAttributes() {
+        return attribute != null;
+    }
+
+    /**
+     * The element steps of this path.
+     */
+    List<Step> steps() {
+        return List.of(steps);
+    }
+
+    /**
+     * The qualified name of the final attribute step, {@code "*"} for any,
+     * or {@code null} if there is none.
+     */
+    @Nullable String attribute() {
+        return attribute;
+    }
+
+    /**
+     * Select the elements matched by this path.
+     *
+     * @param context the node the path is evaluated from
+     * @return a lazy stream of the matching elements in document order
+     * @throws IllegalStateException if this path selects attributes
+     */
+    public Stream<Element> elements(Node context) {
+        if (attribute != null) {
+            throw new IllegalStateException("path selects attributes: " + expression);
+        }
+        return select(context);
+    }
+
+    /**
+     * Select the attributes matched by this path.
+     *
+     * @param context the node the path is evaluated from
+     * @return a lazy stream of the matching attributes in document order
+     * @throws IllegalStateException if this path selects elements
+     */
+    public Stream<Attr> attributes(Node context) {
+        var name = attribute;
+        if (name == null) {
+            throw new IllegalStateException("path selects elements: " + expression);
+        }
+        if (name.equals("*")) {
+            return select(context).flatMap(XmlStreams::attributes);
+        }
+        return select(context).<Attr>mapMulti((e, sink) -> {
+            var attr = e.getAttributeNode(name);
+            if (attr != null) {
+                sink.accept(attr);
+            }
+        });
+    }
+
+    private Stream<Element> select(Node context) {
+        Node start = absolute && !(context instanceof Document)
+                ? requireNonNull(context.getOwnerDocument())
+                : context;
+        if (steps.length == 0) {
+            return start instanceof Element e ? Stream.of(e) : Stream.empty();
+        }
+        return StreamSupport.stream(new PathSpliterator(start, steps), false);
+    }
+
+    /**
+     * The expression this path has been compiled from.
+     *
+     * @return the expression
+     */
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * A recursive-descent parser of path expressions.
+     */
+    private static final class Parser {
+        private final String src;
+        private int pos;
+
+        Parser(String src) {
+            this.src = src;
+        }
+
+        XmlPath parse() {
+            boolean absolute = src.startsWith("/");
+            boolean descendant = src.startsWith("//");
+            pos = descendant ? 2 : absolute ? 1 : 0;
+            var steps = new ArrayList<Step>();
+            if (!absolute && src.startsWith(".")) {
+                pos = 1;
+                if (atEnd()) {
+                    return new XmlPath(src, false, steps, null);
+                }
+                descendant = separator();
+            }
+            while (true) {
+                if (peek() == '@') {
+                    pos++;
+                    if (descendant) {
+                        throw error("attribute step must follow '/'");
+                    }
+                    var name = nameOrWildcard();
+                    if (!atEnd()) {
+                        throw error("attribute step must be the last step");
+                    }
+                    return new XmlPath(src, absolute, steps, name);
+                }
+                var name = nameOrWildcard();
+                var conditions = new ArrayList<Condition>();
+                while (peek() == '[') {
+                    conditions.add(condition());
+                }
+                steps.add(new Step(descendant, name.equals("*") ? null : name, List.copyOf(conditions)));
+                if (steps.size() > MAX_STEPS) {
+                    throw error("more than " + MAX_STEPS + " steps");
+                }
+                if (atEnd()) {
+                    return new XmlPath(src, absolute, steps, null);
+                }
+                descendant = separator();
+            }
+        }
+
+        // "/" or "//" followed by another step; whether it is "//"
+        private boolean separator() {
+            if (peek() != '/') {
+                throw error("'/' expected");
+            }
+            pos++;
+            boolean descendant = peek() == '/';
+            if (descendant) {
+                pos++;
+            }
+            if (atEnd()) {
+                throw error("step expected");
+            }
+            return descendant;
+        }
+
+        private Condition condition() {
+            pos++;
+            skipWhitespace();
+            if (peek() != '@') {
+                throw error("'@' expected");
+            }
+            pos++;
+            var name = name();
+            skipWhitespace();
+            @Nullable String value = null;
+            if (peek() == '=') {
+                pos++;
+                skipWhitespace();
+                char quote = peek();
+                if (quote != '\'' && quote != '"') {
+                    throw error("quoted value expected");
+                }
+                int end = src.indexOf(quote, pos + 1);
+                if (end < 0) {
+                    throw error("unterminated value");
+                }
+                value = src.substring(pos + 1, end);
+                pos = end + 1;
+                skipWhitespace();
+            }
+            if (peek() != ']') {
+                throw error("']' expected");
+            }
+            pos++;
+            return new Condition(name, value);
+        }
+
+        private String nameOrWildcard() {
+            if (peek() == '*') {
+                pos++;
+                return "*";
+            }
+            return name();
+        }
+
+        private String name() {
+            int start = pos;
+            if (!atEnd() && isNameStart(src.charAt(pos))) {
+                pos++;
+                while (!atEnd() && isNamePart(src.charAt(pos))) {
+                    pos++;
+                }
+            }
+            if (start == pos) {
+                throw error("name expected");
+            }
+            return src.substring(start, pos);
+        }
+
+        private static boolean isNameStart(char c) {
+            return Character.isLetter(c) || c == '_' || c == ':' || c > 0x7f;
+        }
+
+        private static boolean isNamePart(char c) {
+            return isNameStart(c) || Character.isDigit(c) || c == '-' || c == '.';
+        }
+
+        private void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(src.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean atEnd() {
+            return pos >= src.length();
+        }
+
+        private char peek() {
+            return atEnd() ? '\0' : src.charAt(pos);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " of path: " + src);
+        }
+    }
+}
@@ -1,18 +1,32 @@
 package io.github.ralfspoeth.xmls;
 
 import org.w3c.dom.*;
+import org.w3c.dom.traversal.NodeFilter;
 
-import java.util.Iterator;
-import java.util.Spliterator;
+import java.io.InputStream;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import static java.util.Spliterators.spliterator;
-
 
 /**
  * The class contains static methods
  * that produce streams of {@link Node}s.
+ *
+ * <p>The streams over child nodes, attributes and descendant elements may be
+ * run in {@linkplain Stream#parallel() parallel}; descendant traversals
+ * split by handing off sibling subtrees. Parallel streams run in the
+ * {@linkplain java.util.concurrent.ForkJoinPool#commonPool() common pool}
+ * unless the terminal operation is invoked from within a task of another
+ * {@link java.util.concurrent.ForkJoinPool}, as in
+ * {@code pool.submit(() -> descendantElements(root).parallel().count()).join()}.
+ * Note that parallel traversal requires a document which is safe for
+ * concurrent reads; DOM implementations, the JDK's included, may create
+ * nodes lazily when they are first accessed.</p>
  */
 public class XmlStreams {
     // prevent instantiation
@@ -23,23 +37,11 @@ public class XmlStreams {
      * {@link Stream} of {@link Attr}ibutes.
      *
      * @param mn the attributes map
-     * @return a sequential stream of attributes ordered as in the given map
+     * @return a sequential stream of attributes ordered as in the given map;
+     * splits evenly when run in parallel
      */
     private static Stream<Attr> stream(NamedNodeMap mn) {
-        final int len = mn.getLength();
-        return StreamSupport.stream(spliterator(new Iterator<>() {
-            int index = 0;
-
-            @Override
-            public boolean hasNext() {
-                return index < len;
-            }
-
-            @Override
-            public Attr next() {
-                return (Attr) mn.item(index++);
-            }
-        }, len, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+        return StreamSupport.stream(new IndexedSpliterator<>(i -> (Attr) mn.item(i), mn.getLength()), false);
     }
 
     /**
@@ -54,67 +56,80 @@ public class XmlStreams {
     }
 
     /**
-     * Turns a {@link NodeList list} of nodes
-     * into a {@link Stream} of nodes.
+     * Turns the child nodes of the given {@link Node}
+     * into a {@link Stream} of these nodes.
      *
-     * @param nl a nodelist
-     * @return a sequential stream of nodes ordered as the given nodelist
+     * <p>The children are visited along the first-child and next-sibling
+     * pointers rather than through the node's {@link NodeList}.</p>
+     *
+     * @param node the parent node whose child nodes are streamed
+     * @return a sequential stream of child nodes in document order
      */
-    private static Stream<Node> stream(NodeList nl) {
-        final int len = nl.getLength();
-        return StreamSupport.stream(spliterator(new Iterator<>() {
-            private int index = 0;
-
-            @Override
-            public boolean hasNext() {
-                return index < len;
-            }
-
-            @Override
-            public Node next() {
-                return nl.item(index++);
-            }
-        }, len, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    public static Stream<Node> childNodes(Node node) {
+        return children(node, n -> true);
     }
 
     /**
-     * Turns the {@link NodeList} of child nodes of the given {@link Node}
-     * into a {@link Stream} of these nodes.
+     * Streams those child nodes of the given node which are accepted by
+     * the given matcher.
      *
-     * @param node the parent node whose child nodes are streamed
-     * @return a sequential stream of child nodes in document order
+     * @param node    the parent node
+     * @param matcher accepts nodes of type {@code T} only; should be created
+     *                once and shared by all parents navigated
+     * @param <T>     the type of the nodes accepted
+     * @return a sequential stream of the matching child nodes in document order
      */
-    public static Stream<Node> childNodes(Node node) {
-        return stream(node.getChildNodes());
+    static <T extends Node> Stream<T> children(Node node, Predicate<? super Node> matcher) {
+        return StreamSupport.stream(new ChildSpliterator<>(node, matcher), false);
+    }
+
+    private static Stream<Element> descendants(Node root, Predicate<? super Element> filter) {
+        return StreamSupport.stream(new DescendantSpliterator(root, filter), false);
     }
 
     /**
      * provide each and every element node of a document.
      *
      * @param doc the document
-     * @return a stream of all element nodes
+     * @return a stream of all element nodes in document order
      */
     public static Stream<Element> allElements(Document doc) {
-        return stream(doc.getElementsByTagName("*")).map(Element.class::cast);
+        return descendants(doc, e -> true);
+    }
+
+    /**
+     * provide the element nodes of a document accepted by the given matcher.
+     *
+     * @param doc     the document
+     * @param matcher the names to match
+     * @return a stream of the matching element nodes in document order
+     */
+    public static Stream<Element> allElements(Document doc, NameMatcher matcher) {
+        return descendants(doc, matcher);
     }
 
     /**
      * Returns a stream over all descendant {@link Element}s of the given element
      * in document order. The element itself is not included.
      *
+     * <p>The stream walks the tree lazily along the first-child, next-sibling
+     * and parent pointers; short-circuiting operations such as
+     * {@link Stream#findFirst()} or {@link Stream#limit(long)} leave the rest
+     * of the tree untouched.</p>
+     *
      * @param element the element whose descendants are streamed
      * @return a stream of descendant elements
      */
     public static Stream<Element> descendantElements(Element element) {
-        return stream(element.getElementsByTagName("*")).map(Element.class::cast);
+        return descendants(element, e -> true);
     }
 
     /**
      * Returns a stream over the descendant {@link Element}s of the given element
      * whose tag name equals {@code name}, in document order.
      *
-     * <p>This method delegates to {@link Element#getElementsByTagName(String)} and
-     * therefore matches on tag (qualified) name. For namespace-aware matching, see
+     * <p>This method matches on tag (qualified) name, like
+     * {@link Element#getElementsByTagName(String)}. For namespace-aware matching, see
      * {@link #descendantElements(Element, String, String)}.</p>
      *
      * @param element the element whose descendants are searched
@@ -122,19 +137,290 @@ public class XmlStreams {
      * @return a stream of matching descendant elements
      */
     public static Stream<Element> descendantElements(Element element, String name) {
-        return stream(element.getElementsByTagName(name)).map(Element.class::cast);
+        return descendants(element, NameMatcher.of(name));
     }
 
     /**
      * Returns a stream over the descendant {@link Element}s of the given element
-     * whose namespace URI and local name match the given values, in document order.
+     * whose namespace URI and local name match the given values, in document order,
+     * like {@link Element#getElementsByTagNameNS(String, String)}.
      *
      * @param element   the element whose descendants are searched
-     * @param ns        the namespace URI; the literal {@code "*"} matches all namespaces
+     * @param ns        the namespace URI; the literal {@code "*"} matches all namespaces,
+     *                  the empty string matches elements in no namespace
      * @param localName the local name; the literal {@code "*"} matches all local names
      * @return a stream of matching descendant elements
      */
     public static Stream<Element> descendantElements(Element element, String ns, String localName) {
-        return stream(element.getElementsByTagNameNS(ns, localName)).map(Element.class::cast);
+        return descendants(element, NameMatcher.of(ns, localName));
+    }
+
+    /**
+     * Returns a stream over the descendant {@link Element}s of the given element
+     * accepted by the given matcher, in document order.
+     *
+     * @param element the element whose descendants are searched
+     * @param matcher the names to match
+     * @return a stream of matching descendant elements
+     */
+    public static Stream<Element> descendantElements(Element element, NameMatcher matcher) {
+        return descendants(element, matcher);
+    }
+
+    /**
+     * Returns a stream over the descendant {@link Element}s of the given element
+     * in document order, pruned by the given function.
+     *
+     * <p>The function is applied to each element visited and decides whether
+     * the traversal descends into the element's subtree
+     * ({@link VisitResult#CONTINUE}), skips it ({@link VisitResult#SKIP_SUBTREE}),
+     * or ends ({@link VisitResult#STOP}). The stream reports each element for
+     * which the function returns {@code CONTINUE} or {@code SKIP_SUBTREE};
+     * skipped subtrees and all nodes after a {@code STOP} are never touched.
+     * Elements deeper than {@code maxDepth} below the given element, its
+     * children being at depth one, are not visited either.</p>
+     *
+     * <p>The function is applied lazily as the stream is consumed. The
+     * stream does not split when run in parallel.</p>
+     *
+     * @param element  the element whose descendants are traversed
+     * @param maxDepth the maximum depth to descend to; {@link Integer#MAX_VALUE} for no limit
+     * @param pruner   the function deciding how to proceed after each element
+     * @return a stream of the visited descendant elements
+     * @throws IllegalArgumentException if {@code maxDepth} is not positive
+     */
+    public static Stream<Element> descendantElements(
+            Element element, int maxDepth, Function<? super Element, VisitResult> pruner
+    ) {
+        var spliterator = new PruningSpliterator(
+                element, NodeFilter.SHOW_ELEMENT, maxDepth, n -> pruner.apply((Element) n)
+        );
+        return StreamSupport.stream(spliterator, false).map(Element.class::cast);
+    }
+
+    /**
+     * Visit the descendant nodes of the given node in document order.
+     *
+     * <p>The visitor is invoked for each node whose type is selected by
+     * {@code whatToShow}, a bit mask made up of the {@code SHOW_*} constants
+     * of {@link NodeFilter} such as {@link NodeFilter#SHOW_ELEMENT}, and
+     * decides whether the traversal descends into the node's subtree
+     * ({@link VisitResult#CONTINUE}), skips it ({@link VisitResult#SKIP_SUBTREE}),
+     * or ends ({@link VisitResult#STOP}). The subtrees of nodes of other types
+     * are traversed without consulting the visitor. Nodes deeper than
+     * {@code maxDepth} below the given node, its children being at depth one,
+     * are not visited.</p>
+     *
+     * @param node       the node whose descendants are visited
+     * @param whatToShow the types of the nodes passed to the visitor
+     * @param maxDepth   the maximum depth to descend to; {@link Integer#MAX_VALUE} for no limit
+     * @param visitor    the visitor
+     * @throws IllegalArgumentException if {@code maxDepth} is not positive
+     */
+    public static void walk(Node node, int whatToShow, int maxDepth, Function<? super Node, VisitResult> visitor) {
+        new PruningSpliterator(node, whatToShow, maxDepth, visitor).forEachRemaining(n -> {});
+    }
+
+    /**
+     * Visit all descendant nodes of the given node in document order; same
+     * as {@code walk(node, NodeFilter.SHOW_ALL, Integer.MAX_VALUE, visitor)}.
+     *
+     * @param node    the node whose descendants are visited
+     * @param visitor the visitor
+     * @see #walk(Node, int, int, Function)
+     */
+    public static void walk(Node node, Function<? super Node, VisitResult> visitor) {
+        walk(node, NodeFilter.SHOW_ALL, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * The values of the attribute with the given qualified name of the
+     * given elements, parsed as {@code int}s ignoring leading and trailing
+     * whitespace; elements without the attribute are skipped.
+     *
+     * <p>The stream is parallel if the given stream is, splits whenever it
+     * does, and closes it when closed. Apart from the text of the values,
+     * nothing is allocated per element, so that aggregates such as
+     * {@code intAttribute(descendantElements(root, "line"), "qty").sum()}
+     * run without per-element garbage. A value which is not a valid integer
+     * is thrown as a {@link NumberFormatException} from the terminal
+     * operation.</p>
+     *
+     * @param elements the elements
+     * @param name     the qualified name of the attribute
+     * @return a stream of the values in the order of the elements
+     */
+    public static IntStream intAttribute(Stream<? extends Element> elements, String name) {
+        return StreamSupport.intStream(new FieldSpliterator.Ints(elements.spliterator(), Columns.attribute(name)), elements.isParallel())
+                .onClose(elements::close);
+    }
+
+    /**
+     * Same as {@link #intAttribute(Stream, String)} for {@code long}s.
+     *
+     * @param elements the elements
+     * @param name     the qualified name of the attribute
+     * @return a stream of the values in the order of the elements
+     */
+    public static LongStream longAttribute(Stream<? extends Element> elements, String name) {
+        return StreamSupport.longStream(new FieldSpliterator.Longs(elements.spliterator(), Columns.attribute(name)), elements.isParallel())
+                .onClose(elements::close);
+    }
+
+    /**
+     * Same as {@link #intAttribute(Stream, String)} for {@code double}s.
+     *
+     * @param elements the elements
+     * @param name     the qualified name of the attribute
+     * @return a stream of the values in the order of the elements
+     */
+    public static DoubleStream doubleAttribute(Stream<? extends Element> elements, String name) {
+        return StreamSupport.doubleStream(new FieldSpliterator.Doubles(elements.spliterator(), Columns.attribute(name)), elements.isParallel())
+                .onClose(elements::close);
+    }
+
+    /**
+     * The text contents of the given elements parsed as {@code int}s like
+     * {@link XmlFunctions#intContent(Element)}, with the same splitting,
+     * closing and allocation behavior as
+     * {@link #intAttribute(Stream, String)}.
+     *
+     * @param elements the elements
+     * @return a stream of the values in the order of the elements
+     */
+    public static IntStream intContent(Stream<? extends Element> elements) {
+        return StreamSupport.intStream(new FieldSpliterator.Ints(elements.spliterator(), Columns.content()), elements.isParallel())
+                .onClose(elements::close);
+    }
+
+    /**
+     * Same as {@link #intContent(Stream)} for {@code long}s.
+     *
+     * @param elements the elements
+     * @return a stream of the values in the order of the elements
+     */
+    public static LongStream longContent(Stream<? extends Element> elements) {
+        return StreamSupport.longStream(new FieldSpliterator.Longs(elements.spliterator(), Columns.content()), elements.isParallel())
+                .onClose(elements::close);
+    }
+
+    /**
+     * Same as {@link #intContent(Stream)} for {@code double}s.
+     *
+     * @param elements the elements
+     * @return a stream of the values in the order of the elements
+     */
+    public static DoubleStream doubleContent(Stream<? extends Element> elements) {
+        return StreamSupport.doubleStream(new FieldSpliterator.Doubles(elements.spliterator(), Columns.content()), elements.isParallel())
+                .onClose(elements::close);
+    }
+
+    /**
+     * Returns a lazy stream over the elements with the given qualified name
+     * read from the given input stream, without building a DOM of the
+     * whole document.
+     *
+     * <p>The input is read with a {@link javax.xml.stream.XMLStreamReader}.
+     * Each matching element is copied, including its subtree, into a small
+     * {@link Document} of its own of which it is the document element;
+     * the fragment is not referenced by the stream once it has been
+     * reported, so the memory required does not depend on the size of the
+     * input. The functions in {@link XmlFunctions} work on these fragments
+     * as on any other element. Matching elements nested within a reported
+     * element are part of its fragment and are not reported separately.
+     * The fragments are namespace-aware.</p>
+     *
+     * <p>The caller retains responsibility for closing the input stream;
+     * closing the returned stream releases the underlying reader. Read or
+     * parse failures are thrown as {@link XmlException}s from the terminal
+     * operation.</p>
+     *
+     * @param in   the input stream
+     * @param name the qualified name of the elements to report, with
+     *             prefix if the elements have one
+     * @return a stream of detached elements in document order
+     * @throws XmlException if the input cannot be read
+     */
+    public static Stream<Element> records(InputStream in, String name) {
+        var reader = StaxSupport.reader(in);
+        return StreamSupport.stream(RecordSpliterator.byName(reader, name), false)
+                .onClose(() -> StaxSupport.close(reader));
+    }
+
+    /**
+     * Same as {@link #records(InputStream, String)} but matches the elements
+     * by namespace URI and local name.
+     *
+     * @param in        the input stream
+     * @param ns        the namespace URI; the empty string matches elements in no namespace
+     * @param localName the local name
+     * @return a stream of detached elements in document order
+     * @throws XmlException if the input cannot be read
+     */
+    public static Stream<Element> records(InputStream in, String ns, String localName) {
+        var reader = StaxSupport.reader(in);
+        return StreamSupport.stream(RecordSpliterator.byNamespace(reader, ns, localName), false)
+                .onClose(() -> StaxSupport.close(reader));
+    }
+
+    /**
+     * Returns a lazy stream over the elements selected by the given
+     * {@link XmlPath} in the document read from the given input stream,
+     * without building a DOM of the whole document.
+     *
+     * <p>The path is evaluated from the document in a single forward pass
+     * over the events of a {@link javax.xml.stream.XMLStreamReader}, so
+     * that absolute and relative paths select the same elements; the memory
+     * required is bounded by the depth of the document, and subtrees no
+     * step of the path may match are skipped. Each selected element is
+     * reported as a detached fragment, as by
+     * {@link #records(InputStream, String)}; selected elements nested
+     * within a reported element are part of its fragment and are not
+     * reported separately. The text content of the fragments is available
+     * to the typed parsers of {@link XmlFunctions}, as in
+     * {@code select(in, "/export/orders/order[@status='open']/total").map(XmlFunctions::decimalContent)}.</p>
+     *
+     * <p>The caller retains responsibility for closing the input stream;
+     * closing the returned stream releases the underlying reader. Read or
+     * parse failures are thrown as {@link XmlException}s from the terminal
+     * operation.</p>
+     *
+     * @param in   the input stream
+     * @param path the path expression
+     * @return a stream of detached elements in document order
+     * @throws IllegalArgumentException if the path is not valid or selects attributes
+     * @throws XmlException             if the input cannot be read
+     */
+    public static Stream<Element> select(InputStream in, String path) {
+        var compiled = XmlPath.compile(path);
+        if (compiled.selectsAttributes()) {
+            throw new IllegalArgumentException("path selects attributes: " + path);
+        }
+        var reader = StaxSupport.reader(in);
+        return StreamSupport.stream(StreamingPathSpliterator.elements(reader, compiled), false)
+                .onClose(() -> StaxSupport.close(reader));
+    }
+
+    /**
+     * Same as {@link #select(InputStream, String)} but for a path ending
+     * with an attribute step; the selected attributes are reported as
+     * detached copies, ready for the typed parsers of {@link XmlFunctions}
+     * such as {@link XmlFunctions#intValue(Attr)}. Only the attributes
+     * are copied, not the elements they belong to.
+     *
+     * @param in   the input stream
+     * @param path the path expression
+     * @return a stream of detached attributes in document order
+     * @throws IllegalArgumentException if the path is not valid or selects elements
+     * @throws XmlException             if the input cannot be read
+     */
+    public static Stream<Attr> selectAttributes(InputStream in, String path) {
+        var compiled = XmlPath.compile(path);
+        if (!compiled.selectsAttributes()) {
+            throw new IllegalArgumentException("path selects elements: " + path);
+        }
+        var reader = StaxSupport.reader(in);
+        return StreamSupport.stream(StreamingPathSpliterator.attributes(reader, compiled), false)
+                .onClose(() -> StaxSupport.close(reader));
     }
 }
@@ -6,17 +6,50 @@
  * <ul>
  *   <li>{@link io.github.ralfspoeth.xmls.Xml} &mdash; convenience entry points
  *       for parsing XML from strings, streams, readers, or paths into a
- *       {@link org.w3c.dom.Document}.</li>
+ *       {@link org.w3c.dom.Document}, including concurrent parsing of many files.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.ParseOptions} &mdash; namespace
+ *       awareness and the ignorable nodes dropped while parsing.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.ParseResult} &mdash; the outcome of
+ *       parsing a single file as part of a batch.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.DocumentCache} &mdash; a bounded
+ *       cache of documents parsed from files, revalidated against the
+ *       files' modification times and sizes.</li>
  *   <li>{@link io.github.ralfspoeth.xmls.XmlStreams} &mdash; static methods that turn
  *       {@link org.w3c.dom.NodeList NodeList}s and
  *       {@link org.w3c.dom.NamedNodeMap NamedNodeMap}s into streams of
  *       {@link org.w3c.dom.Node Node}s and {@link org.w3c.dom.Attr Attr}ibutes,
- *       plus descendant-element traversal.</li>
+ *       plus descendant-element traversal and StAX-backed streaming of
+ *       selected elements of arbitrarily large documents.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.DocumentIndex} &mdash; the elements
+ *       of a document indexed by name and by the values of selected
+ *       attributes, for repeated lookups.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.NameMatcher} &mdash; precompiled
+ *       tests of element names for the navigators and traversals.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.XmlPath} &mdash; compiled path
+ *       expressions selecting elements or attributes in a single
+ *       traversal of a DOM, or in a single pass over the StAX events of a
+ *       document too large for one.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.Projection} &mdash; named fields,
+ *       each a relative path with a parser, extracted from an element in a
+ *       single traversal.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.RecordBinder} and
+ *       {@link io.github.ralfspoeth.xmls.Bind} &mdash; binding of elements to
+ *       record classes introspected once.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.Columns} &mdash; numeric fields of
+ *       many elements extracted into primitive arrays.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.VisitResult} &mdash; the decision on
+ *       how to proceed returned by the visitors and pruning functions of
+ *       {@link io.github.ralfspoeth.xmls.XmlStreams}.</li>
  *   <li>{@link io.github.ralfspoeth.xmls.XmlFunctions} &mdash; static factory methods
  *       for {@link java.util.function.Function}s that navigate the DOM tree, plus
  *       parsers that convert {@link org.w3c.dom.Attr} values and
  *       {@link org.w3c.dom.Element} text content to typed
  *       {@link java.util.Optional} results.</li>
+ *   <li>{@link io.github.ralfspoeth.xmls.CompactDocument} and
+ *       {@link io.github.ralfspoeth.xmls.CompactElement} &mdash; an immutable,
+ *       array-backed tree for read-only workloads, built from a StAX parse
+ *       or from a {@link org.w3c.dom.Document}, with the navigation and typed
+ *       parsers of the DOM utilities.</li>
  *   <li>{@link io.github.ralfspoeth.xmls.XmlException} &mdash; unchecked exception
  *       thrown by {@link io.github.ralfspoeth.xmls.Xml} on parse or I/O failure.</li>
  * </ul>
@@ -0,0 +1,76 @@
+package io.github.ralfspoeth.xmls;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+import static io.github.ralfspoeth.xmls.XmlStreams.descendantElements;
+import static java.util.stream.Collectors.joining;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnsTest extends BaseTest {
+
+    private static final String TICKS = """
+            <ticks>
+                <tick px="1.5" qty="10"> 7 </tick>
+                <tick qty="20">8</tick>
+                <tick px=" 2.25 ">9</tick>
+            </ticks>""";
+
+    @Test
+    void testColumns() {
+        // given
+        var root = parseString(TICKS).getDocumentElement();
+        var columns = Columns.of(descendantElements(root, "tick"));
+        var pxPresent = new BitSet();
+        var qtyPresent = new BitSet();
+        qtyPresent.set(100);
+        // when
+        var px = columns.doubles(Columns.attribute("px"), pxPresent);
+        var qty = columns.longs(Columns.attribute("qty"), qtyPresent);
+        var content = columns.ints(Columns.content());
+        // then
+        assertAll(
+                () -> assertEquals(3, columns.size()),
+                () -> assertArrayEquals(new double[]{1.5, 0, 2.25}, px),
+                () -> assertEquals(BitSet.valueOf(new long[]{0b101}), pxPresent),
+                () -> assertArrayEquals(new long[]{10, 20, 0}, qty),
+                () -> assertEquals(BitSet.valueOf(new long[]{0b011}), qtyPresent),
+                () -> assertArrayEquals(new int[]{7, 8, 9}, content)
+        );
+    }
+
+    @Test
+    void testParallelAgreesWithSequential() {
+        // given
+        var src = IntStream.range(0, 20_000)
+                .mapToObj(i -> i % 3 == 0 ? "<v/>" : "<v n=\"%d\"/>".formatted(i))
+                .collect(joining("", "<r>", "</r>"));
+        var root = Xml.freeze(Xml.parse(src)).getDocumentElement();
+        var elements = descendantElements(root).toArray(Element[]::new);
+        var sequentialPresent = new BitSet();
+        var parallelPresent = new BitSet();
+        // when
+        var sequential = Columns.of(elements, false).ints(Columns.attribute("n"), sequentialPresent);
+        var parallel = Columns.of(elements, true).ints(Columns.attribute("n"), parallelPresent);
+        // then
+        assertAll(
+                () -> assertArrayEquals(sequential, parallel),
+                () -> assertEquals(sequentialPresent, parallelPresent),
+                () -> assertEquals(IntStream.range(0, 20_000).filter(i -> i % 3 != 0).sum(), Arrays.stream(parallel).sum()),
+                () -> assertEquals(20_000 - 6_667, parallelPresent.cardinality())
+        );
+    }
+
+    @Test
+    void testMalformedValue() {
+        // given
+        var root = parseString("<r><v n=\"1\"/><v n=\"x\"/></r>").getDocumentElement();
+        var columns = Columns.of(descendantElements(root));
+        // then
+        assertThrows(NumberFormatException.class, () -> columns.ints(Columns.attribute("n")));
+    }
+}
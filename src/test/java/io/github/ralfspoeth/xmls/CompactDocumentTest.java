@@ -0,0 +1,148 @@
+package io.github.ralfspoeth.xmls;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactDocumentTest extends BaseTest {
+
+    private static final String SRC = """
+            <?xml version='1.0'?>
+            <!-- a comment -->
+            <root xmlns:p='urn:p' version='3'>
+                <item id='1' date='2024-10-24' p:flag='true'>one<!-- dropped --> and <![CDATA[more]]></item>
+                <item id='2'> 42 </item>
+                <p:item id='3'><sub>a</sub>b<sub>c</sub></p:item>
+                <?pi data?>
+                <empty/>
+            </root>
+            """;
+
+    // a canonical rendering of the tree; the DOM reorders attributes
+    private static String render(CompactElement e) {
+        return e.namespaceURI() + "|" + e.name() + "|" + e.localName() + new TreeMap<>(e.attributes())
+                + e.children().map(CompactDocumentTest::render).collect(Collectors.joining(",", "[", "]"))
+                + "'" + e.textContent() + "'";
+    }
+
+    @Test
+    void testParseAndOfAgree() {
+        // given
+        var parsed = CompactDocument.parse(SRC);
+        var copied = CompactDocument.of(parseStringNameSpaced(SRC));
+        var fromBytes = CompactDocument.parse(new ByteArrayInputStream(SRC.getBytes(StandardCharsets.UTF_8)));
+        // then
+        assertAll(
+                () -> assertEquals(render(parsed.root()), render(copied.root())),
+                () -> assertEquals(render(parsed.root()), render(fromBytes.root())),
+                () -> assertEquals(parsed.size(), copied.size())
+        );
+    }
+
+    @Test
+    void testNavigation() {
+        // given
+        var root = CompactDocument.parse(SRC).root();
+        // when
+        var items = root.children("item").toList();
+        var all = root.descendants().map(CompactElement::name).toList();
+        // then
+        assertAll(
+                () -> assertEquals("root", root.name()),
+                () -> assertTrue(root.parent().isEmpty()),
+                () -> assertEquals(2, items.size()),
+                () -> assertEquals(root, items.getFirst().parent().orElseThrow()),
+                () -> assertEquals(List.of("item", "item", "p:item", "sub", "sub", "empty"), all),
+                () -> assertEquals(3, root.descendants("*", "item").count()),
+                () -> assertEquals(1, root.children("urn:p", "item").count()),
+                () -> assertEquals(2, root.descendants("sub").count()),
+                () -> assertEquals(0, root.descendants("missing").count()),
+                () -> assertEquals("urn:p", root.children("p:item").findFirst().orElseThrow().namespaceURI()),
+                () -> assertEquals("", root.namespaceURI())
+        );
+    }
+
+    @Test
+    void testTextAndAttributes() {
+        // given
+        var root = CompactDocument.parse(SRC).root();
+        var first = root.children("item").findFirst().orElseThrow();
+        var second = root.children("item").skip(1).findFirst().orElseThrow();
+        var third = root.children("p:item").findFirst().orElseThrow();
+        // then
+        assertAll(
+                () -> assertEquals("one and more", first.textContent()),
+                () -> assertEquals(" 42 ", second.textContent()),
+                () -> assertEquals("42", second.text()),
+                () -> assertEquals("abc", third.text()),
+                () -> assertEquals(Map.of("version", "3"), root.attributes()),
+                () -> assertEquals("1", first.attributeValue("id").orElseThrow()),
+                () -> assertEquals("true", first.attributeValue("urn:p", "flag").orElseThrow()),
+                () -> assertTrue(first.attributeValue("missing").isEmpty()),
+                () -> assertEquals("", root.children("empty").findFirst().orElseThrow().textContent())
+        );
+    }
+
+    @Test
+    void testTypedExtraction() {
+        // given
+        var root = CompactDocument.parse(SRC).root();
+        var first = root.children("item").findFirst().orElseThrow();
+        var second = root.children("item").skip(1).findFirst().orElseThrow();
+        // then
+        assertAll(
+                () -> assertEquals(3, root.intValue("version").orElseThrow()),
+                () -> assertEquals(3L, root.longValueOr("version", -1L)),
+                () -> assertEquals(-1, root.intValueOr("missing", -1)),
+                () -> assertEquals(3.0, root.doubleValue("version").orElseThrow()),
+                () -> assertEquals(LocalDate.of(2024, 10, 24), first.dateValue("date").orElseThrow()),
+                () -> assertTrue(first.booleanValue("p:flag").orElseThrow()),
+                () -> assertEquals(42, second.intContent()),
+                () -> assertEquals(42L, second.longContent()),
+                () -> assertEquals(42.0, second.doubleContent()),
+                () -> assertEquals(new BigDecimal("42"), second.decimalContent()),
+                () -> assertEquals("42", second.content(String::strip)),
+                () -> assertThrows(NumberFormatException.class, () -> first.intContent())
+        );
+    }
+
+    @Test
+    void testInvalidViews() {
+        var doc = CompactDocument.parse("<a>text</a>");
+        assertAll(
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> new CompactElement(doc, 2)),
+                () -> assertThrows(IllegalArgumentException.class, () -> new CompactElement(doc, 1)),
+                () -> assertThrows(XmlException.class, () -> CompactDocument.parse("<a>")),
+                () -> assertEquals("Failed to read missing.xml",
+                        assertThrows(XmlException.class, () -> CompactDocument.parse(Path.of("missing.xml"))).getMessage())
+        );
+    }
+
+    @Test
+    void testParallelDescendants() {
+        // given
+        var src = IntStream.range(0, 5_000)
+                .mapToObj(i -> "<row n='" + i + "'><cell>" + i + "</cell></row>")
+                .collect(Collectors.joining("", "<table>", "</table>"));
+        var root = CompactDocument.parse(src).root();
+        // when
+        long sum = root.descendants("cell").parallel().mapToLong(CompactElement::longContent).sum();
+        var ns = root.descendants("row").parallel().mapToInt(r -> r.intValueOr("n", -1)).toArray();
+        // then
+        assertAll(
+                () -> assertEquals(5_000L * 4_999 / 2, sum),
+                () -> assertArrayEquals(IntStream.range(0, 5_000).toArray(), ns)
+        );
+    }
+}
@@ -0,0 +1,199 @@
+package io.github.ralfspoeth.xmls;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentCacheTest {
+
+    private static Path write(Path dir, String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content);
+    }
+
+    @Test
+    void testHitsAndMisses(@TempDir Path tmp) throws IOException {
+        // given
+        var cache = new DocumentCache(10);
+        var file = write(tmp, "a.xml", "<a/>");
+        // when
+        var first = cache.get(file);
+        var second = cache.get(tmp.resolve("x/../a.xml"));
+        // then
+        assertAll(
+                () -> assertSame(first, second),
+                () -> assertEquals(new DocumentCache.Stats(1, 1, 0), cache.stats()),
+                () -> assertEquals(0.5, cache.stats().hitRate()),
+                () -> assertEquals(1, cache.size())
+        );
+    }
+
+    @Test
+    void testModifiedFileIsParsedAgain(@TempDir Path tmp) throws IOException {
+        // given
+        var cache = new DocumentCache(10);
+        var file = write(tmp, "a.xml", "<a/>");
+        var first = cache.get(file);
+        // when
+        Files.writeString(file, "<b/>");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(10)));
+        var second = cache.get(file);
+        // then
+        assertAll(
+                () -> assertNotSame(first, second),
+                () -> assertEquals("b", second.getDocumentElement().getTagName()),
+                () -> assertEquals(2, cache.stats().misses()),
+                () -> assertEquals(1, cache.size())
+        );
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted(@TempDir Path tmp) throws IOException {
+        // given
+        var cache = new DocumentCache(2);
+        var a = write(tmp, "a.xml", "<a/>");
+        var b = write(tmp, "b.xml", "<b/>");
+        var c = write(tmp, "c.xml", "<c/>");
+        var docA = cache.get(a);
+        cache.get(b);
+        // when
+        cache.get(a);
+        cache.get(c);
+        var stats = cache.stats();
+        var again = cache.get(a);
+        cache.get(b);
+        // then
+        assertAll(
+                () -> assertEquals(new DocumentCache.Stats(1, 3, 1), stats),
+                () -> assertSame(docA, again),
+                // b has been evicted and is parsed again
+                () -> assertEquals(4, cache.stats().misses())
+        );
+    }
+
+    @Test
+    void testSourceBytesBound(@TempDir Path tmp) throws IOException {
+        // given
+        var cache = new DocumentCache(100, 40, ParseOptions.DEFAULT);
+        var small = write(tmp, "small.xml", "<a>0123456789</a>");
+        var other = write(tmp, "other.xml", "<b>0123456789</b>");
+        var large = write(tmp, "large.xml", "<a>" + "x".repeat(100) + "</a>");
+        // when
+        cache.get(small);
+        cache.get(other);
+        var doc = cache.get(large);
+        // then
+        assertAll(
+                () -> assertEquals("a", doc.getDocumentElement().getTagName()),
+                // the large file does not fit and displaces the others, too
+                () -> assertEquals(0, cache.size()),
+                () -> assertEquals(3, cache.stats().evictions())
+        );
+    }
+
+    @Test
+    void testConcurrentMissesParseOnce(@TempDir Path tmp) throws Exception {
+        // given
+        var cache = new DocumentCache(10);
+        var file = write(tmp, "a.xml", "<a>" + "<b/>".repeat(10_000) + "</a>");
+        var start = new CountDownLatch(1);
+        var results = new ArrayList<Future<Document>>();
+        // when
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get(file);
+                }));
+            }
+            start.countDown();
+        }
+        // then
+        var first = results.getFirst().get();
+        for (var r : results) {
+            assertSame(first, r.get());
+        }
+        assertEquals(new DocumentCache.Stats(199, 1, 0), cache.stats());
+    }
+
+    @Test
+    void testFailuresAreNotCached(@TempDir Path tmp) throws IOException {
+        // given
+        var cache = new DocumentCache(10);
+        var file = write(tmp, "a.xml", "<a>");
+        // when
+        assertThrows(XmlException.class, () -> cache.get(file));
+        assertThrows(XmlException.class, () -> cache.get(tmp.resolve("missing.xml")));
+        Files.writeString(file, "<a/>");
+        // then
+        assertAll(
+                () -> assertEquals("a", cache.get(file).getDocumentElement().getTagName()),
+                () -> assertEquals(1, cache.size())
+        );
+    }
+
+    @Test
+    void testErrorsReachWaitingThreads(@TempDir Path tmp) throws Exception {
+        // given
+        var file = write(tmp, "a.xml", "<a/>");
+        var parsing = new CountDownLatch(1);
+        var waiting = new CountDownLatch(1);
+        var cache = new DocumentCache(10, Long.MAX_VALUE, path -> {
+            parsing.countDown();
+            try {
+                waiting.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new StackOverflowError("too deep");
+        });
+        // when
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var loader = executor.submit(() -> cache.get(file));
+            parsing.await();
+            var waiter = executor.submit(() -> cache.get(file));
+            // let the waiter block on the pending entry before the parser fails
+            while (cache.stats().hits() == 0) {
+                Thread.onSpinWait();
+            }
+            waiting.countDown();
+            // then
+            var loaderFailure = assertThrows(ExecutionException.class, loader::get);
+            var waiterFailure = assertThrows(ExecutionException.class, waiter::get);
+            assertAll(
+                    () -> assertInstanceOf(StackOverflowError.class, loaderFailure.getCause()),
+                    () -> assertInstanceOf(XmlException.class, waiterFailure.getCause()),
+                    () -> assertInstanceOf(StackOverflowError.class, waiterFailure.getCause().getCause()),
+                    () -> assertEquals(0, cache.size())
+            );
+        }
+    }
+
+    @Test
+    void testInvalidate(@TempDir Path tmp) throws IOException {
+        // given
+        var cache = new DocumentCache(10);
+        var a = write(tmp, "a.xml", "<a/>");
+        var b = write(tmp, "b.xml", "<b/>");
+        cache.get(a);
+        cache.get(b);
+        // when
+        cache.invalidate(a);
+        // then
+        assertEquals(1, cache.size());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,183 @@
+package io.github.ralfspoeth.xmls;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static io.github.ralfspoeth.xmls.XmlStreams.descendantElements;
+import static java.util.stream.Collectors.joining;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentIndexTest extends BaseTest {
+
+    private static final String NESTED = """
+            <root xmlns:p="urn:p">
+                <a id="1"><b ref="x"/><p:b id="2"><b ref="x"/></p:b></a>
+                <b id="3"><a><b ref="y"/></a></b>
+                <p:a xmlns="urn:d"><b id="4"/><c/></p:a>
+            </root>""";
+
+    private static Document large() {
+        var items = IntStream.range(0, 500)
+                .mapToObj(i -> "<group id=\"g%d\"><item ref=\"r%d\"/><item ref=\"r%d\"><item/></item></group>"
+                        .formatted(i, i % 7, i % 3))
+                .collect(joining("", "<root>", "</root>"));
+        return Xml.freeze(Xml.parse(items));
+    }
+
+    @Test
+    void testElementsByNameAgreeWithXmlStreams() {
+        // given
+        var doc = parseString(NESTED);
+        var index = DocumentIndex.of(doc);
+        var root = doc.getDocumentElement();
+        // then
+        for (var name : List.of("a", "b", "p:b", "p:a", "c", "x", "*")) {
+            assertEquals(descendantElements(root, name).toList(), index.descendantElements(root, name).toList(), name);
+            for (var e : XmlStreams.allElements(doc).toList()) {
+                assertEquals(descendantElements(e, name).toList(), index.descendantElements(e, name).toList());
+            }
+        }
+        assertAll(
+                () -> assertEquals(XmlStreams.allElements(doc).toList(), index.allElements().toList()),
+                () -> assertEquals(XmlStreams.allElements(doc).count(), index.size()),
+                () -> assertEquals(2, index.elements("a").count()),
+                () -> assertEquals(1, index.elements("p:a").count())
+        );
+    }
+
+    @Test
+    void testElementsByNamespaceAgreeWithXmlStreams() {
+        // given
+        var doc = parseStringNameSpaced(NESTED);
+        var index = DocumentIndex.of(doc);
+        // then
+        for (var ns : List.of("", "urn:p", "urn:d", "urn:x", "*")) {
+            for (var local : List.of("a", "b", "c", "*")) {
+                for (var e : XmlStreams.allElements(doc).toList()) {
+                    assertEquals(
+                            descendantElements(e, ns, local).toList(),
+                            index.descendantElements(e, ns, local).toList(),
+                            ns + " " + local
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    void testElementsByNamespaceWithoutNamespaceAwareness() {
+        // given
+        var doc = parseString(NESTED);
+        var index = DocumentIndex.of(doc);
+        var root = doc.getDocumentElement();
+        // then
+        for (var ns : List.of("", "urn:p", "*")) {
+            for (var local : List.of("a", "b", "p:b", "*")) {
+                for (var e : XmlStreams.allElements(doc).toList()) {
+                    assertEquals(
+                            descendantElements(e, ns, local).toList(),
+                            index.descendantElements(e, ns, local).toList(),
+                            ns + " " + local
+                    );
+                }
+            }
+        }
+        assertEquals(descendantElements(root).toList(), index.descendantElements(root, "", "*").toList());
+    }
+
+    @Test
+    void testUnexpandedEntityReferences() throws Exception {
+        // given
+        var factory = DocumentBuilderFactory.newDefaultInstance();
+        factory.setExpandEntityReferences(false);
+        var doc = factory.newDocumentBuilder().parse(new InputSource(new StringReader("""
+                <!DOCTYPE root [<!ENTITY pair "<b><c/></b><b/>">]>
+                <root><a>&pair;<d/></a><e/></root>""")));
+        var a = (Element) doc.getElementsByTagName("a").item(0);
+        // the JDK's parser leaves the reference empty; fill in its replacement
+        doc.setStrictErrorChecking(false);
+        var pair = a.getFirstChild();
+        pair.appendChild(doc.createElement("b")).appendChild(doc.createElement("c"));
+        pair.appendChild(doc.createElement("b"));
+        // when
+        var index = DocumentIndex.of(doc);
+        // then
+        assertAll(
+                () -> assertEquals(Node.ENTITY_REFERENCE_NODE, a.getFirstChild().getNodeType()),
+                () -> assertEquals(List.of("b", "c", "b", "d"),
+                        index.descendantElements(a).map(Element::getTagName).toList()),
+                () -> assertEquals(List.of("b", "b"),
+                        index.descendantElements(a, "b").map(Element::getTagName).toList())
+        );
+        for (var e : XmlStreams.allElements(doc).toList()) {
+            assertEquals(descendantElements(e).toList(), index.descendantElements(e).toList(), e.getTagName());
+        }
+    }
+
+    @Test
+    void testWithAttribute() {
+        // given
+        var doc = parseString(NESTED);
+        var index = DocumentIndex.of(doc, "id", "ref");
+        var a = index.withAttribute("id", "1").findFirst().orElseThrow();
+        // then
+        assertAll(
+                () -> assertEquals("a", a.getTagName()),
+                () -> assertEquals(List.of("p:b"), index.withAttribute("id", "2").map(Element::getTagName).toList()),
+                () -> assertEquals(2, index.withAttribute("ref", "x").count()),
+                () -> assertEquals(0, index.withAttribute("ref", "z").count()),
+                () -> assertEquals(2, index.withAttribute(a, "ref", "x").count()),
+                () -> assertEquals(0, index.withAttribute(a, "ref", "y").count()),
+                () -> assertEquals(0, index.withAttribute("id", "").count())
+        );
+    }
+
+    @Test
+    void testInvalidQueries() {
+        // given
+        var doc = parseString(NESTED);
+        var index = DocumentIndex.of(doc, "id");
+        var foreign = parseString("<a/>").getDocumentElement();
+        // then
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class, () -> index.withAttribute("ref", "x")),
+                () -> assertThrows(IllegalArgumentException.class, () -> index.descendantElements(foreign)),
+                () -> assertThrows(IllegalArgumentException.class, () -> index.descendantElements(foreign, "a"))
+        );
+    }
+
+    @Test
+    void testParallelBuildAgreesWithSequential() {
+        // given
+        var doc = large();
+        // when
+        var sequential = DocumentIndex.of(doc, List.of("id", "ref"), false);
+        var parallel = DocumentIndex.of(doc, List.of("id", "ref"), true);
+        // then
+        assertEquals(sequential.allElements().toList(), parallel.allElements().toList());
+        for (var name : List.of("root", "group", "item")) {
+            assertEquals(sequential.elements(name).toList(), parallel.elements(name).toList());
+        }
+        for (int i = 0; i < 7; i++) {
+            assertEquals(
+                    sequential.withAttribute("ref", "r" + i).toList(),
+                    parallel.withAttribute("ref", "r" + i).toList()
+            );
+        }
+        var group = parallel.withAttribute("id", "g42").findFirst().orElseThrow();
+        assertAll(
+                () -> assertEquals(1500, parallel.elements("item").count()),
+                () -> assertEquals(1500, parallel.elements("item").parallel().count()),
+                () -> assertEquals(descendantElements(group).toList(), parallel.descendantElements(group).toList()),
+                () -> assertEquals(3, parallel.descendantElements(group, "item").count())
+        );
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.ralfspoeth.xmls;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static io.github.ralfspoeth.xmls.XmlStreams.descendantElements;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameMatcherTest extends BaseTest {
+
+    private static final String NESTED = """
+            <root xmlns:p="urn:p">
+                <a id="1"><b/><p:b id="2"><c/></p:b></a>
+                <b id="3"/>
+                <p:a xmlns="urn:d"><b id="4"/><c/></p:a>
+            </root>""";
+
+    private static List<String> names(Stream<Element> elements) {
+        return elements.map(Element::getTagName).toList();
+    }
+
+    @Test
+    void testQualifiedNames() {
+        // given
+        var root = parseStringNameSpaced(NESTED).getDocumentElement();
+        // when, then
+        assertAll(
+                () -> assertEquals(names(descendantElements(root, "b")), names(descendantElements(root, NameMatcher.of("b")))),
+                () -> assertEquals(List.of("b", "b", "b"), names(descendantElements(root, NameMatcher.of("b")))),
+                () -> assertEquals(List.of("a", "p:b", "p:a"),
+                        names(descendantElements(root, NameMatcher.anyOf("a", "p:b", "p:a", "x")))),
+                () -> assertEquals(names(descendantElements(root)), names(descendantElements(root, NameMatcher.anyOf("b", "*")))),
+                () -> assertEquals(names(descendantElements(root)), names(descendantElements(root, NameMatcher.any()))),
+                () -> assertEquals(List.of("a", "b"),
+                        names(Stream.of((Node) root).flatMap(XmlFunctions.elements(NameMatcher.anyOf("a", "b"))))),
+                () -> assertFalse(NameMatcher.any().test(root.getFirstChild()))
+        );
+    }
+
+    @Test
+    void testNamespacedNames() {
+        // given
+        var doc = parseStringNameSpaced(NESTED);
+        var root = doc.getDocumentElement();
+        // then
+        for (var ns : List.of("", "urn:p", "urn:d", "*", "urn:x")) {
+            for (var local : List.of("a", "b", "c", "*")) {
+                assertEquals(
+                        names(descendantElements(root, ns, local)),
+                        names(descendantElements(root, NameMatcher.of(ns, local))),
+                        ns + " " + local
+                );
+                assertEquals(
+                        names(XmlStreams.allElements(doc).filter(e -> e.getParentNode() == root)
+                                .filter(e -> ns.equals("*") || ns.equals(e.getNamespaceURI() == null ? "" : e.getNamespaceURI()))
+                                .filter(e -> local.equals("*") || local.equals(e.getLocalName()))),
+                        names(Stream.of((Node) root).flatMap(XmlFunctions.elements(ns, local))),
+                        ns + " " + local
+                );
+            }
+        }
+    }
+
+    @Test
+    void testNamesNotInterned() {
+        // given
+        var doc = parseString("<r/>");
+        var root = doc.getDocumentElement();
+        var names = IntStream.range(0, 12).mapToObj(i -> new String(new char[]{'e', (char) ('a' + i)})).toList();
+        names.forEach(n -> root.appendChild(doc.createElement(new String(n.toCharArray()))));
+        // when, then
+        assertAll(
+                () -> assertEquals(1L, descendantElements(root, NameMatcher.of("eb")).count()),
+                () -> assertEquals(2L, descendantElements(root, NameMatcher.anyOf("ea", "ec", "zz")).count()),
+                () -> assertEquals(12L, descendantElements(root, NameMatcher.anyOf(names)).count()),
+                () -> assertEquals(List.of("ek", "el"),
+                        names(descendantElements(root, NameMatcher.anyOf(List.of("ek", "el", "x1", "x2", "x3", "x4", "x5", "x6", "x7")))))
+        );
+    }
+}
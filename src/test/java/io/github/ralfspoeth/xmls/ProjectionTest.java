@@ -0,0 +1,166 @@
+package io.github.ralfspoeth.xmls;
+
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.joining;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectionTest extends BaseTest {
+
+    private static final String ORDER = """
+            <order id="42" status="open">
+                <header><date>2025-12-30</date><customer ref="c7">ACME</customer></header>
+                <lines>
+                    <line sku="a"><qty>2</qty></line>
+                    <line sku="b"><qty>3</qty></line>
+                </lines>
+                <total currency="EUR"> 12.50 </total>
+                <note><total currency="USD">1</total></note>
+            </order>""";
+
+    private static final Projection PROJECTION = Projection.builder()
+            .value("id", "@id", XmlFunctions::intValue)
+            .content("self", ".", e -> e == null ? null : e.getTagName())
+            .content("date", "header/date", XmlFunctions::dateContent)
+            .value("customer", "header/customer/@ref", XmlFunctions::stringValue)
+            .content("customerName", "header/customer", XmlFunctions::text)
+            .value("firstSku", "lines/line/@sku", XmlFunctions::stringValue)
+            .content("secondQty", "lines/line[@sku='b']/qty", XmlFunctions::intContent)
+            .value("currency", "total/@currency", XmlFunctions::stringValue)
+            .value("anyCurrency", ".//total/@currency", XmlFunctions::stringValue)
+            .content("total", "total", XmlFunctions::decimalContent)
+            .value("missing", "@missing", XmlFunctions::stringValue)
+            .content("absent", "lines/absent", XmlFunctions::intContent)
+            .build();
+
+    @Test
+    void testValues() {
+        // given
+        var order = parseString(ORDER).getDocumentElement();
+        // when
+        var values = PROJECTION.values(order);
+        // then
+        assertAll(
+                () -> assertEquals(OptionalInt.of(42), values[PROJECTION.index("id")]),
+                () -> assertEquals(Optional.of(LocalDate.of(2025, 12, 30)), values[PROJECTION.index("date")]),
+                () -> assertEquals(Optional.of("c7"), values[PROJECTION.index("customer")]),
+                () -> assertEquals(Optional.of("ACME"), values[PROJECTION.index("customerName")]),
+                () -> assertEquals(Optional.of("a"), values[PROJECTION.index("firstSku")]),
+                () -> assertEquals(OptionalInt.of(3), values[PROJECTION.index("secondQty")]),
+                () -> assertEquals(Optional.of("EUR"), values[PROJECTION.index("currency")]),
+                () -> assertEquals(Optional.of("EUR"), values[PROJECTION.index("anyCurrency")]),
+                () -> assertEquals(Optional.of(new BigDecimal("12.50")), values[PROJECTION.index("total")]),
+                () -> assertEquals(Optional.empty(), values[PROJECTION.index("missing")]),
+                () -> assertEquals(OptionalInt.empty(), values[PROJECTION.index("absent")]),
+                () -> assertEquals("order", values[PROJECTION.index("self")])
+        );
+    }
+
+    @Test
+    void testMap() {
+        // given
+        var order = parseString(ORDER).getDocumentElement();
+        // when
+        var map = PROJECTION.map(order);
+        // then
+        assertAll(
+                () -> assertEquals(PROJECTION.names(), List.copyOf(map.keySet())),
+                () -> assertEquals(Arrays.asList(PROJECTION.values(order)), List.copyOf(map.values()))
+        );
+    }
+
+    @Test
+    void testAgreesWithPaths() {
+        // given
+        var fields = 100;
+        var src = IntStream.range(0, fields)
+                .mapToObj(i -> "<f%d><v a=\"%d\">%d</v></f%d>".formatted(i % 10, i, i, i % 10))
+                .collect(joining("", "<r>", "</r>"));
+        var root = parseString(src).getDocumentElement();
+        var builder = Projection.builder();
+        var paths = IntStream.range(0, fields)
+                .mapToObj(i -> "f%d/v[@a='%d']/@a".formatted(i % 10, i) + (i % 2 == 0 ? "" : "x"))
+                .toList();
+        paths.forEach(p -> builder.value(p, p, XmlFunctions::stringValue));
+        // when
+        var projection = builder.build();
+        var values = projection.values(root);
+        // then
+        for (var p : paths) {
+            var expected = XmlPath.compile(p).attributes(root).findFirst().map(a -> a.getValue());
+            assertEquals(expected, values[projection.index(p)], p);
+        }
+    }
+
+    @Test
+    void testSkipsSubtreesOfFilledFields() {
+        // given
+        var touched = new ArrayList<String>();
+        // root with the children x and y
+        var nodes = new Element[3];
+        nodes[0] = element("root", (name, args) -> "getFirstChild".equals(name) ? nodes[1] : null);
+        nodes[1] = element("x", (name, args) -> switch (name) {
+            case "getNextSibling" -> nodes[2];
+            case "getParentNode" -> nodes[0];
+            default -> null;
+        });
+        nodes[2] = element("y", (name, args) -> {
+            touched.add("y." + name);
+            return "getParentNode".equals(name) ? nodes[0] : null;
+        });
+        var root = nodes[0];
+        var projection = Projection.builder()
+                .content("x", ".//x", e -> e == null ? null : e.getTagName())
+                .value("missing", "z/@a", XmlFunctions::stringValue)
+                .build();
+        // when
+        var values = projection.values(root);
+        // then
+        assertAll(
+                () -> assertArrayEquals(new Object[]{"x", Optional.empty()}, values),
+                // y is visited, but not descended into once x has been found
+                () -> assertFalse(touched.contains("y.getFirstChild"), touched.toString())
+        );
+    }
+
+    private static Element element(String tagName, BiFunction<String, Object @Nullable [], @Nullable Object> navigation) {
+        return (Element) Proxy.newProxyInstance(Element.class.getClassLoader(), new Class<?>[]{Element.class}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "getTagName", "getNodeName", "getLocalName" -> tagName;
+                    case "getNodeType" -> Node.ELEMENT_NODE;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> tagName;
+                    default -> method.getReturnType() == boolean.class ? false : navigation.apply(method.getName(), args);
+                });
+    }
+
+    @Test
+    void testInvalidFields() {
+        // given
+        var builder = Projection.builder().value("id", "@id", XmlFunctions::intValue);
+        // then
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class, () -> builder.value("id", "@id", XmlFunctions::intValue)),
+                () -> assertThrows(IllegalArgumentException.class, () -> builder.value("a", "a", XmlFunctions::intValue)),
+                () -> assertThrows(IllegalArgumentException.class, () -> builder.value("a", "a/@*", XmlFunctions::intValue)),
+                () -> assertThrows(IllegalArgumentException.class, () -> builder.content("a", "a/@id", XmlFunctions::intContent)),
+                () -> assertThrows(IllegalArgumentException.class, () -> builder.content("a", "/a", XmlFunctions::intContent)),
+                () -> assertThrows(IllegalArgumentException.class, () -> builder.build().index("a"))
+        );
+    }
+}
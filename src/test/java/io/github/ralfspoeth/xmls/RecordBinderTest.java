@@ -0,0 +1,116 @@
+package io.github.ralfspoeth.xmls;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordBinderTest extends BaseTest {
+
+    record Customer(String ref, String name) {}
+
+    record Order(
+            int id,
+            String status,
+            @Bind("header/date") LocalDate date,
+            @Bind("header/customer") Customer customer,
+            @Bind("total/@currency") String currency,
+            BigDecimal total,
+            Optional<String> note,
+            OptionalInt priority,
+            long missing,
+            Boolean express
+    ) {}
+
+    record Item(int qty) {}
+
+    record Recursive(String name, Recursive next) {}
+
+    record Unsupported(List<String> items) {}
+
+    private static final String ORDER = """
+            <order id="42" status="open">
+                <header><date>2025-12-30</date><customer ref="c7"><name>ACME</name></customer></header>
+                <total currency="EUR">12.50</total>
+                <express>true</express>
+            </order>""";
+
+    @Test
+    void testBind() {
+        // given
+        var binder = RecordBinder.of(Order.class, MethodHandles.lookup());
+        var element = parseString(ORDER).getDocumentElement();
+        // when
+        var order = binder.bind(element);
+        // then
+        assertEquals(new Order(
+                42, "open", LocalDate.of(2025, 12, 30), new Customer("c7", "ACME"), "EUR",
+                new BigDecimal("12.50"), Optional.empty(), OptionalInt.empty(), 0L, true
+        ), order);
+    }
+
+    @Test
+    void testAttributeTakesPrecedence() {
+        // given
+        var binder = RecordBinder.of(Customer.class, MethodHandles.lookup());
+        // when
+        var customer = binder.bind(parseString("<c name=\"attr\"><name>child</name><ref>r</ref></c>").getDocumentElement());
+        // then
+        assertEquals(new Customer("r", "attr"), customer);
+    }
+
+    @Test
+    void testChildNotParsedIfAttributePresent() {
+        // given
+        var binder = RecordBinder.of(Item.class, MethodHandles.lookup());
+        // when
+        var item = binder.bind(parseString("<item qty=\"3\"><qty>n/a</qty></item>").getDocumentElement());
+        // then
+        assertAll(
+                () -> assertEquals(new Item(3), item),
+                () -> assertEquals(new Item(4), binder.bind(parseString("<item><qty> 4 </qty></item>").getDocumentElement())),
+                () -> assertThrows(NumberFormatException.class,
+                        () -> binder.bind(parseString("<item><qty>n/a</qty></item>").getDocumentElement()))
+        );
+    }
+
+    @Test
+    void testBindStreamedRecords() {
+        // given
+        var binder = RecordBinder.of(Customer.class, MethodHandles.lookup());
+        var src = "<all><customer ref=\"1\" name=\"a\"/><x/><customer ref=\"2\"><name>b</name></customer></all>";
+        // when
+        List<Customer> customers;
+        try (var records = XmlStreams.records(new ByteArrayInputStream(src.getBytes(UTF_8)), "customer")) {
+            customers = records.map(binder::bind).toList();
+        }
+        // then
+        assertEquals(List.of(new Customer("1", "a"), new Customer("2", "b")), customers);
+    }
+
+    @Test
+    void testParseFailure() {
+        // given
+        var binder = RecordBinder.of(Order.class, MethodHandles.lookup());
+        var element = parseString("<order id=\"x\"/>").getDocumentElement();
+        // then
+        assertThrows(NumberFormatException.class, () -> binder.bind(element));
+    }
+
+    @Test
+    void testInvalidRecords() {
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class, () -> RecordBinder.of(Customer.class)),
+                () -> assertThrows(IllegalArgumentException.class, () -> RecordBinder.of(Recursive.class, MethodHandles.lookup())),
+                () -> assertThrows(IllegalArgumentException.class, () -> RecordBinder.of(Unsupported.class, MethodHandles.lookup()))
+        );
+    }
+}
@@ -1,20 +1,28 @@
 package io.github.ralfspoeth.xmls;
 
+import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.time.*;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static io.github.ralfspoeth.xmls.XmlStreams.attributes;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class XmlFunctionsTest extends BaseTest {
 
@@ -358,6 +366,62 @@ class XmlFunctionsTest extends BaseTest {
         );
     }
 
+    @Test
+    void testDateTimeParsersAgreeWithJdk() {
+        // given
+        var dates = List.of(
+                "2024-10-24", "0000-01-01", "9999-12-31", "2024-02-29", "2023-02-29", "2024-13-01",
+                "2024-1-24", "+12024-10-24", "-0001-01-01", "2024-10-24Z", "2024/10/24", "٢٠٢٤-10-24", ""
+        );
+        var dateTimes = List.of(
+                "2024-10-24T12:34:56", "2024-10-24T12:34:56.1", "2024-10-24T12:34:56.123456789",
+                "2024-10-24T12:34:56.1234567890", "2024-10-24T12:34", "2024-10-24T24:00:00",
+                "2024-10-24T23:59:60", "2024-10-24T12:34:56.", "2024-10-24 12:34:56", "2024-10-24t12:34:56"
+        );
+        var offsets = List.of(
+                "Z", "+02:00", "-05:30", "+00:00", "-00:00", "+18:00", "-18:00", "+18:15", "+05:45",
+                "+02", "+0200", "+02:00:30", "z", "+2:00", "+02:60"
+        );
+        var zones = List.of("", "[Europe/Berlin]", "[UTC]", "[+02:00]", "[Mars/Olympus]", "[]", "[Europe/Berlin");
+        // then
+        for (var d : dates) {
+            assertEquals(outcome(LocalDate::parse, d), outcome(Lexical::parseDate, d), d);
+        }
+        for (var t : dateTimes) {
+            assertEquals(outcome(LocalDateTime::parse, t), outcome(Lexical::parseDateTime, t), t);
+            for (var o : offsets) {
+                var ot = t + o;
+                assertEquals(outcome(OffsetDateTime::parse, ot), outcome(Lexical::parseOffsetDateTime, ot), ot);
+                for (var z : zones) {
+                    var zt = ot + z;
+                    assertEquals(outcome(ZonedDateTime::parse, zt), outcome(Lexical::parseZonedDateTime, zt), zt);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testZonedDateTimeOffsetTakesPrecedence() {
+        // the offset determines the instant, also in a gap, an overlap, or if it does not match the zone
+        for (var s : List.of(
+                "2024-03-31T02:30:00+01:00[Europe/Berlin]",
+                "2024-10-27T02:30:00+01:00[Europe/Berlin]",
+                "2024-10-27T02:30:00+02:00[Europe/Berlin]",
+                "2024-07-01T12:00:00+05:00[Europe/Berlin]"
+        )) {
+            assertEquals(ZonedDateTime.parse(s), Lexical.parseZonedDateTime(s), s);
+        }
+    }
+
+    // the value or the type of exception thrown
+    private static Object outcome(Function<String, ?> parser, String s) {
+        try {
+            return parser.apply(s);
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
     @Test
     void testBooleanLiterals() {
         // given
@@ -402,4 +466,251 @@ class XmlFunctionsTest extends BaseTest {
                 () -> assertTrue(XmlFunctions.booleanValue(null).isEmpty())
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void testElementsInParallel() {
+        // given
+        var src = IntStream.range(0, 5_000)
+                .mapToObj(i -> i % 3 == 0 ? "<a n='" + i + "'/>" : "<b/>text<!--c-->")
+                .collect(Collectors.joining("", "<root>", "</root>"));
+        var root = parseString(src).getDocumentElement();
+        // when
+        var sequential = Stream.of(root).flatMap(XmlFunctions.elements("a")).toList();
+        var parallel = XmlFunctions.elements("a").apply(root).parallel().toList();
+        // then
+        assertAll(
+                () -> assertEquals(1_667, sequential.size()),
+                () -> assertEquals(sequential, parallel),
+                () -> assertEquals(3_333L, XmlFunctions.childrenNamed("#comment").apply(root).parallel().count())
+        );
+    }
+
+    @Test
+    void testPrimitiveParsersWithDefaults() {
+        // given
+        var root = parseString("<root i='-7' l='12345678901' d='2.5'><i> 42 </i><l>\n12345678901\n</l><d>0.5</d></root>")
+                .getDocumentElement();
+        var i = root.getAttributeNode("i");
+        var l = root.getAttributeNode("l");
+        var d = root.getAttributeNode("d");
+        Element ie = (Element) root.getElementsByTagName("i").item(0);
+        Element le = (Element) root.getElementsByTagName("l").item(0);
+        Element de = (Element) root.getElementsByTagName("d").item(0);
+        // then
+        assertAll(
+                () -> assertEquals(-7, XmlFunctions.intValueOr(i, 0)),
+                () -> assertEquals(1, XmlFunctions.intValueOr(null, 1)),
+                () -> assertEquals(12345678901L, XmlFunctions.longValueOr(l, 0)),
+                () -> assertEquals(1L, XmlFunctions.longValueOr(null, 1)),
+                () -> assertEquals(2.5, XmlFunctions.doubleValueOr(d, 0)),
+                () -> assertEquals(1.5, XmlFunctions.doubleValueOr(null, 1.5)),
+                () -> assertEquals(42, XmlFunctions.intContentOr(ie, 0)),
+                () -> assertEquals(1, XmlFunctions.intContentOr(null, 1)),
+                () -> assertEquals(12345678901L, XmlFunctions.longContentOr(le, 0)),
+                () -> assertEquals(1L, XmlFunctions.longContentOr(null, 1)),
+                () -> assertEquals(0.5, XmlFunctions.doubleContentOr(de, 0)),
+                () -> assertEquals(1.5, XmlFunctions.doubleContentOr(null, 1.5)),
+                // the optional versions agree
+                () -> assertEquals(42, XmlFunctions.intContent(ie).orElseThrow()),
+                () -> assertEquals(12345678901L, XmlFunctions.longContent(le).orElseThrow()),
+                // attribute values are not trimmed, element content is
+                () -> assertThrows(NumberFormatException.class,
+                        () -> XmlFunctions.intValueOr(parseString("<r a=' 1'/>").getDocumentElement().getAttributeNode("a"), 0)),
+                () -> assertThrows(NumberFormatException.class,
+                        () -> XmlFunctions.intContentOr(parseString("<r>  </r>").getDocumentElement(), 0)),
+                () -> assertThrows(NumberFormatException.class,
+                        () -> XmlFunctions.longContentOr(parseString("<r>1 2</r>").getDocumentElement(), 0))
+        );
+    }
+
+    @Test
+    void testPrimitiveParsersDoNotAllocate() throws Throwable {
+        // given
+        var allocatedBytes = allocatedBytesOfCurrentThread();
+        assumeTrue(allocatedBytes != null, "thread allocation counter not available");
+        var root = parseString("<root n='42'><v> 1234 </v><w>12345678901</w></root>").getDocumentElement();
+        var n = root.getAttributeNode("n");
+        Element v = (Element) root.getElementsByTagName("v").item(0);
+        Element w = (Element) root.getElementsByTagName("w").item(0);
+        // when
+        long sum = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sum += XmlFunctions.intValueOr(n, 0) + XmlFunctions.intContentOr(v, 0) + XmlFunctions.longContentOr(w, 0);
+        }
+        long before = (long) allocatedBytes.invoke();
+        for (int i = 0; i < 100_000; i++) {
+            sum += XmlFunctions.intValueOr(n, 0) + XmlFunctions.intContentOr(v, 0) + XmlFunctions.longContentOr(w, 0);
+        }
+        long allocated = (long) allocatedBytes.invoke() - before;
+        // then
+        assertEquals(110_000L * (42 + 1234 + 12345678901L), sum);
+        assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void testXPath() {
+        // given
+        var root = parseString("""
+                <orders>
+                    <order id="1" status="open"><total> 12.50 </total><date>2025-12-30</date></order>
+                    <order id="2" status="closed"><total>3</total><express>1</express></order>
+                </orders>""").getDocumentElement();
+        // when
+        var open = Stream.of(root).flatMap(XmlFunctions.xpath("order[@status='open']")).toList();
+        // then
+        assertAll(
+                () -> assertEquals(1, open.size()),
+                () -> assertEquals(List.of("1", "2"), Stream.of(root)
+                        .flatMap(XmlFunctions.xpath("//order/@id"))
+                        .map(Node::getNodeValue)
+                        .toList()),
+                () -> assertEquals(Optional.of("12.50"), XmlFunctions.xpathText("order/total").apply(root)),
+                () -> assertEquals(Optional.of(new BigDecimal("12.50")), XmlFunctions.xpathDecimal("order/total").apply(root)),
+                () -> assertEquals(3, XmlFunctions.xpathInt("order[@id='2']/total").apply(root).orElseThrow()),
+                () -> assertEquals(2L, XmlFunctions.xpathLong("order[last()]/@id").apply(root).orElseThrow()),
+                () -> assertEquals(12.5, XmlFunctions.xpathDouble("order/total").apply(root).orElseThrow()),
+                () -> assertEquals(Optional.of(LocalDate.of(2025, 12, 30)), XmlFunctions.xpathDate("order/date").apply(root)),
+                () -> assertEquals(Optional.of(true), XmlFunctions.xpathBoolean("//express").apply(root)),
+                () -> assertEquals(Optional.empty(), XmlFunctions.xpathText("order/missing").apply(root)),
+                () -> assertEquals(Optional.of("-42"), XmlFunctions.xpathText("0 - 42").apply(root)),
+                () -> assertEquals(Optional.of("100000000000000000000"), XmlFunctions.xpathText("100000000000000000000").apply(root)),
+                () -> assertEquals(Optional.of("9223372036854776000"), XmlFunctions.xpathText("9223372036854775807 + 1").apply(root)),
+                () -> assertEquals(Optional.of("12345678.5"), XmlFunctions.xpathText("12345678 + 0.5").apply(root)),
+                () -> assertEquals(Optional.of("0.00001"), XmlFunctions.xpathText("0.00001").apply(root)),
+                () -> assertEquals(Optional.of("-0.25"), XmlFunctions.xpathText("0 - 0.25").apply(root)),
+                () -> assertEquals(Optional.of("0"), XmlFunctions.xpathText("0 * -1").apply(root)),
+                () -> assertEquals(Optional.of("NaN"), XmlFunctions.xpathText("number('x')").apply(root)),
+                () -> assertEquals(Optional.of("-Infinity"), XmlFunctions.xpathText("-1 div 0").apply(root)),
+                () -> assertTrue(XmlFunctions.xpathInt("order/missing").apply(root).isEmpty()),
+                () -> assertThrows(NumberFormatException.class, () -> XmlFunctions.xpathInt("order/date").apply(root)),
+                () -> assertThrows(IllegalArgumentException.class, () -> XmlFunctions.xpath("order[")),
+                () -> assertThrows(XmlException.class, () -> XmlFunctions.xpath("$undefined").apply(root))
+        );
+    }
+
+    @Test
+    void testXPathCache() {
+        // given
+        var cache = new XPathCache(2);
+        // when
+        var first = cache.expression("a");
+        var again = cache.expression("a");
+        cache.expression("b");
+        cache.expression("c");
+        // then
+        assertAll(
+                () -> assertSame(first, again),
+                () -> assertEquals(2, cache.size()),
+                () -> assertNotSame(first, cache.expression("a"))
+        );
+    }
+
+    @Test
+    void testXPathConcurrentEvaluation() {
+        // given
+        var doc = Xml.freeze(parseString(IntStream.range(0, 100)
+                .mapToObj(i -> "<item n=\"%d\"/>".formatted(i))
+                .collect(Collectors.joining("", "<items>", "</items>"))));
+        var sum = XmlFunctions.xpathInt("sum(//item/@n)");
+        var count = XmlFunctions.xpath("//item[@n > 49]");
+        // when
+        var results = IntStream.range(0, 2000).parallel()
+                .mapToObj(i -> List.of((long) sum.apply(doc).orElseThrow(), count.apply(doc).count()))
+                .distinct()
+                .toList();
+        // then
+        assertEquals(List.of(List.of(4950L, 50L)), results);
+    }
+
+    @Test
+    void testMemoize() {
+        // given
+        var doc = parseString("""
+                <orders>
+                    <order currency="EUR"><line/><line/></order>
+                    <order><line/></order>
+                </orders>""");
+        var calls = new AtomicInteger();
+        var lines = XmlFunctions.memoize(n -> {
+            calls.incrementAndGet();
+            return XmlFunctions.elements("line").apply(n);
+        }, 16);
+        Function<Element, Optional<String>> currency = XmlFunctions.memoizeValue(XmlFunctions.attributeValue("currency"), 16);
+        var orders = XmlStreams.descendantElements(doc.getDocumentElement(), "order").toList();
+        // when
+        var first = orders.stream().map(o -> lines.apply(o).toList()).toList();
+        var second = orders.stream().map(o -> lines.apply(o).toList()).toList();
+        // then
+        assertAll(
+                () -> assertEquals(first, second),
+                () -> assertEquals(List.of(2, 1), first.stream().map(List::size).toList()),
+                () -> assertSame(first.getFirst().getFirst(), second.getFirst().getFirst()),
+                () -> assertEquals(2, calls.get()),
+                () -> assertEquals(Optional.of("EUR"), currency.apply(orders.getFirst())),
+                () -> assertEquals(Optional.empty(), currency.apply(orders.get(1))),
+                () -> assertThrows(IllegalArgumentException.class, () -> XmlFunctions.memoize(XmlFunctions.elements("x"), 0))
+        );
+    }
+
+    @Test
+    void testMemoBoundedPerDocument() {
+        // given
+        var calls = new AtomicInteger();
+        var memo = new NodeMemo<Node, String>(n -> n.getNodeName() + calls.incrementAndGet(), 2);
+        var a = parseString("<a><b/><c/><d/></a>");
+        var x = parseString("<x/>");
+        var children = XmlStreams.descendantElements(a.getDocumentElement()).toList();
+        // when
+        children.forEach(memo::apply);
+        memo.apply(x.getDocumentElement());
+        var again = memo.apply(children.get(2));
+        var evicted = memo.apply(children.getFirst());
+        // then
+        assertAll(
+                () -> assertEquals("d3", again),
+                () -> assertEquals("b5", evicted),
+                () -> assertEquals(2, memo.size(a)),
+                () -> assertEquals(1, memo.size(x)),
+                // nodes without a document are not cached
+                () -> assertNotEquals(memo.apply(a.createElement("e")), memo.apply(a.createElement("e")))
+        );
+    }
+
+    @Test
+    void testMemoizeConcurrently() {
+        // given
+        var doc = Xml.freeze(parseString(IntStream.range(0, 100)
+                .mapToObj(i -> "<g><item n=\"%d\"/><item n=\"%d\"/></g>".formatted(i, i + 1))
+                .collect(Collectors.joining("", "<r>", "</r>"))));
+        var groups = XmlStreams.descendantElements(doc.getDocumentElement(), "g").toList();
+        var items = XmlFunctions.memoize(XmlFunctions.elements("item"), 50);
+        // when
+        var sums = IntStream.range(0, 20).parallel()
+                .mapToObj(i -> groups.stream()
+                        .flatMap(items)
+                        .mapToInt(e -> XmlFunctions.intValueOr(e.getAttributeNode("n"), 0))
+                        .sum())
+                .distinct()
+                .toList();
+        // then
+        assertEquals(List.of(2 * 4950 + 100), sums);
+    }
+
+    /**
+     * The current thread's allocation counter of the
+     * {@code com.sun.management.ThreadMXBean}, looked up reflectively since
+     * it lives outside the modules required by this library.
+     */
+    private static @Nullable MethodHandle allocatedBytesOfCurrentThread() {
+        try {
+            var bean = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean")
+                    .invoke(null);
+            var method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getCurrentThreadAllocatedBytes");
+            return MethodHandles.publicLookup().unreflect(method).bindTo(bean);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.ralfspoeth.xmls;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static io.github.ralfspoeth.xmls.XmlFunctions.elements;
+import static org.junit.jupiter.api.Assertions.*;
+
+class XmlPathTest extends BaseTest {
+
+    private static final String ORDERS = """
+            <orders>
+                <order id="1" status="open"><line sku="a"/><line sku="b"><item type="x"/></line></order>
+                <order id="2" status="closed"><item type="x"><item type="y"/></item></order>
+                <group><order id="3" status="open"><line sku="c"/></order></group>
+                <item type='x' id="4"><item type="x" id="5"/></item>
+            </orders>""";
+
+    private static List<Node> xpath(Node context, String expression) throws XPathExpressionException {
+        var nodes = (NodeList) XPathFactory.newInstance().newXPath()
+                .evaluate(expression, context, XPathConstants.NODESET);
+        var result = new ArrayList<Node>();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            result.add(nodes.item(i));
+        }
+        return result;
+    }
+
+    private static List<Node> select(Node context, String expression) {
+        var path = XmlPath.compile(expression);
+        return List.copyOf(path.selectsAttributes() ? path.attributes(context).toList() : path.elements(context).toList());
+    }
+
+    @Test
+    void testAgreesWithXPath() throws XPathExpressionException {
+        // given
+        var doc = parseString(ORDERS);
+        var root = doc.getDocumentElement();
+        var order = XmlPath.compile("order").elements(root).findFirst().orElseThrow();
+        // then
+        for (var expression : List.of(
+                "order", "order/line", "*/line", "//item", "//item[@type='x']", "//item[@type=\"x\"]//item",
+                "//order[@status='open']/line/@sku", "//order[ @status = 'open' ][@id='3']", "/orders/group/order",
+                "//*[@id]", "order/@*", "//item//item", "//line/item", "group//line", ".//line", "nothing//item",
+                "/orders/order/@id", "//*", "*"
+        )) {
+            assertEquals(xpath(root, expression), select(root, expression), expression);
+            assertEquals(xpath(order, expression), select(order, expression), expression);
+            assertEquals(xpath(doc, expression), select(doc, expression), expression);
+        }
+    }
+
+    @Test
+    void testAgreesWithFlatMapChain() {
+        // given
+        var doc = parseResource("/simple.xml");
+        var root = doc.getDocumentElement();
+        // when
+        var chain = Stream.of(root)
+                .flatMap(elements("b"))
+                .flatMap(elements("c"))
+                .flatMap(elements("d"))
+                .flatMap(elements("e"))
+                .toList();
+        // then
+        assertAll(
+                () -> assertEquals(chain, XmlPath.compile("b/c/d/e").elements(root).toList()),
+                () -> assertEquals(chain, Stream.of(root).flatMap(XmlFunctions.path("b/c/d/e")).toList()),
+                () -> assertEquals(1234, XmlPath.compile("/root/b/c/d/e").elements(root).mapToInt(e -> XmlFunctions.intContentOr(e, 0)).sum())
+        );
+    }
+
+    @Test
+    void testContextAndAttributes() {
+        // given
+        var root = parseString(ORDERS).getDocumentElement();
+        var item = XmlPath.compile("item").elements(root).findFirst().orElseThrow();
+        // then
+        assertAll(
+                () -> assertEquals(List.of(item), XmlPath.compile(".").elements(item).toList()),
+                () -> assertEquals(List.of("4"), XmlPath.compile("@id").attributes(item).map(Attr::getValue).toList()),
+                () -> assertEquals(List.of("4", "x"), XmlPath.compile("@*").attributes(item).map(Attr::getValue).sorted().toList()),
+                () -> assertTrue(XmlPath.compile("@id").selectsAttributes()),
+                () -> assertTrue(XmlPath.compile("//a").absolute()),
+                () -> assertFalse(XmlPath.compile("a//b").absolute()),
+                () -> assertEquals("a//b", XmlPath.compile("a//b").toString())
+        );
+    }
+
+    @Test
+    void testShortCircuits() {
+        // given
+        var root = parseString(ORDERS).getDocumentElement();
+        // when
+        var first = XmlPath.compile("//item[@type='y']").elements(root).findFirst();
+        // then
+        assertEquals("y", first.map(e -> e.getAttribute("type")).orElseThrow());
+    }
+
+    @Test
+    void testDeepPath() {
+        // given
+        var depth = 100;
+        var src = "<a>".repeat(depth) + "</a>".repeat(depth);
+        var root = parseString(src).getDocumentElement();
+        // then
+        assertAll(
+                () -> assertEquals(depth - 1, XmlPath.compile(".//a").elements(root).count()),
+                () -> assertEquals(1, XmlPath.compile("a/a/a/a").elements(root).count()),
+                () -> assertEquals(depth - 63, XmlPath.compile("a" + "//a".repeat(62)).elements(root).count())
+        );
+    }
+
+    @Test
+    void testInvalidPaths() {
+        // given
+        var root = parseString("<a/>").getDocumentElement();
+        // then
+        for (var expression : List.of(
+                "", "/", "a/", "a///b", "a[", "a[id]", "a[@id=x]", "a[@id='x]", "a//@id", "a/@id/b", "1a", "..",
+                "a" + "/a".repeat(63)
+        )) {
+            assertThrows(IllegalArgumentException.class, () -> XmlPath.compile(expression), expression);
+        }
+        assertAll(
+                () -> assertThrows(IllegalStateException.class, () -> XmlPath.compile("a/@id").elements(root)),
+                () -> assertThrows(IllegalStateException.class, () -> XmlPath.compile("a").attributes(root)),
+                () -> assertThrows(IllegalArgumentException.class, () -> XmlFunctions.path("a/@id"))
+        );
+    }
+
+    @Test
+    void testSharedAcrossThreads() {
+        // given
+        var doc = Xml.freeze(parseString(ORDERS));
+        var path = XmlPath.compile("//order[@status='open']/line");
+        // when
+        var counts = Stream.generate(() -> doc).limit(1000).parallel()
+                .mapToLong(d -> path.elements(d).count())
+                .distinct()
+                .boxed()
+                .toList();
+        // then
+        assertEquals(List.of(3L), counts);
+    }
+}
@@ -1,9 +1,30 @@
 package io.github.ralfspoeth.xmls;
 
+import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.Test;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.traversal.NodeFilter;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -147,4 +168,452 @@ class XmlStreamsTest extends BaseTest {
                 )
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDescendantElementsMatchGetElementsByTagName() {
+        // given
+        var src = """
+                <?xml version='1.0'?>
+                <root xmlns:x='http://example.com/x'>
+                    <!-- comment -->
+                    <a><b><a><x:b/></a></b>text<c/></a>
+                    <x:a><b/><?pi data?></x:a>
+                    <b><a/></b>
+                </root>""";
+        var doc = parseStringNameSpaced(src);
+        var root = doc.getDocumentElement();
+        // then
+        assertAll(
+                () -> assertEquals(list(doc.getElementsByTagName("*")), XmlStreams.allElements(doc).toList()),
+                () -> assertEquals(list(root.getElementsByTagName("*")), XmlStreams.descendantElements(root).toList()),
+                () -> assertEquals(list(root.getElementsByTagName("a")), XmlStreams.descendantElements(root, "a").toList()),
+                () -> assertEquals(list(root.getElementsByTagName("x:b")), XmlStreams.descendantElements(root, "x:b").toList()),
+                () -> assertEquals(list(root.getElementsByTagNameNS("*", "b")),
+                        XmlStreams.descendantElements(root, "*", "b").toList()),
+                () -> assertEquals(list(root.getElementsByTagNameNS("", "b")),
+                        XmlStreams.descendantElements(root, "", "b").toList()),
+                () -> assertEquals(list(root.getElementsByTagNameNS("http://example.com/x", "*")),
+                        XmlStreams.descendantElements(root, "http://example.com/x", "*").toList()),
+                () -> assertEquals(list(doc.getElementsByTagName("c")).getFirst(),
+                        XmlStreams.descendantElements(root, "c").findFirst().orElseThrow())
+        );
+    }
+
+    @Test
+    void testParallelDescendantElements() throws Exception {
+        // given a randomly shaped tree
+        var random = new Random(42);
+        var sb = new StringBuilder("<root>");
+        var depth = 0;
+        for (int i = 0; i < 20_000; i++) {
+            switch (random.nextInt(3)) {
+                case 0 -> { sb.append("<a n='").append(i).append("'>"); depth++; }
+                case 1 -> sb.append("<b n='").append(i).append("'/>text");
+                default -> { if (depth > 0) { sb.append("</a>"); depth--; } }
+            }
+        }
+        sb.append("</a>".repeat(depth)).append("</root>");
+        var doc = parseString(sb.toString());
+        var root = doc.getDocumentElement();
+        // traverse once sequentially to expand lazily created nodes
+        var expected = XmlStreams.allElements(doc).toList();
+        var expectedB = XmlStreams.descendantElements(root, "b").toList();
+        // when
+        var spliterator = XmlStreams.allElements(doc).spliterator();
+        var pool = new ForkJoinPool(4);
+        try {
+            // then
+            assertAll(
+                    // the document element is handed off, its children kept
+                    () -> assertNotNull(spliterator.trySplit()),
+                    () -> assertNotNull(spliterator.trySplit()),
+                    () -> assertEquals(expected, XmlStreams.allElements(doc).parallel().toList()),
+                    () -> assertEquals(expected.subList(1, expected.size()),
+                            XmlStreams.descendantElements(root).parallel().toList()),
+                    () -> assertEquals(expectedB, XmlStreams.descendantElements(root, "b").parallel().toList()),
+                    () -> assertEquals(expectedB, pool.submit(
+                            () -> XmlStreams.descendantElements(root, "b").parallel().toList()
+                    ).get())
+            );
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testPrunedDescendantElements() {
+        // given
+        var src = """
+                <?xml version='1.0'?>
+                <order>
+                    <line n='1'><attachments><line n='x'/></attachments></line>
+                    <history><line n='y'/></history>
+                    <line n='2'><sub><line n='3'/></sub></line>
+                    <end/>
+                    <line n='4'/>
+                </order>""";
+        var root = parseString(src).getDocumentElement();
+        var visited = new ArrayList<String>();
+        // when
+        Function<Element, VisitResult> pruner = e -> {
+            visited.add(e.getTagName());
+            return switch (e.getTagName()) {
+                case "attachments", "history" -> VisitResult.SKIP_SUBTREE;
+                case "end" -> VisitResult.STOP;
+                default -> VisitResult.CONTINUE;
+            };
+        };
+        var lines = XmlStreams.descendantElements(root, Integer.MAX_VALUE, pruner)
+                .filter(e -> e.getTagName().equals("line"))
+                .map(e -> e.getAttribute("n"))
+                .toList();
+        // then
+        assertAll(
+                () -> assertEquals(List.of("1", "2", "3"), lines),
+                // pruned subtrees and everything after STOP are never visited
+                () -> assertEquals(List.of("line", "attachments", "history", "line", "sub", "line", "end"), visited),
+                // depth limit
+                () -> assertEquals(List.of("line", "history", "line", "end", "line"), XmlStreams
+                        .descendantElements(root, 1, e -> VisitResult.CONTINUE)
+                        .map(Element::getTagName)
+                        .toList()),
+                () -> assertEquals(10L, XmlStreams
+                        .descendantElements(root, 3, e -> VisitResult.CONTINUE)
+                        .count()),
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> XmlStreams.descendantElements(root, 0, e -> VisitResult.CONTINUE))
+        );
+    }
+
+    @Test
+    void testWalk() {
+        // given
+        var root = parseString("<r><a>t1<!--c--><b>t2</b></a><a>t3</a></r>").getDocumentElement();
+        // when
+        var texts = new ArrayList<String>();
+        XmlStreams.walk(root, NodeFilter.SHOW_TEXT, Integer.MAX_VALUE, n -> {
+            texts.add(n.getNodeValue());
+            return VisitResult.CONTINUE;
+        });
+        var all = new ArrayList<String>();
+        XmlStreams.walk(root, n -> {
+            all.add(n.getNodeName());
+            return n.getNodeName().equals("b") ? VisitResult.STOP : VisitResult.CONTINUE;
+        });
+        // then
+        assertAll(
+                () -> assertEquals(List.of("t1", "t2", "t3"), texts),
+                () -> assertEquals(List.of("a", "#text", "#comment", "b"), all)
+        );
+    }
+
+    private static List<Element> list(NodeList nl) {
+        return IntStream.range(0, nl.getLength()).mapToObj(nl::item).map(Element.class::cast).toList();
+    }
+
+    @Test
+    void testParallelChildNodes() {
+        // given
+        var n = 10_000;
+        var src = IntStream.range(0, n)
+                .mapToObj(i -> "<node n='" + i + "'/>")
+                .collect(Collectors.joining("", "<root>", "</root>"));
+        var root = parseString(src).getDocumentElement();
+        // when
+        var spliterator = XmlStreams.childNodes(root).spliterator();
+        var prefix = spliterator.trySplit();
+        // then
+        assertAll(
+                () -> assertNotNull(prefix),
+                () -> assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED)),
+                () -> assertEquals(n / 2, prefix.estimateSize()),
+                () -> assertEquals(n / 2, spliterator.estimateSize()),
+                () -> assertEquals(
+                        XmlStreams.childNodes(root).map(Node::getNodeName).toList(),
+                        XmlStreams.childNodes(root).parallel().map(Node::getNodeName).toList()
+                ),
+                () -> assertEquals((long) n * (n - 1) / 2, XmlStreams.childNodes(root)
+                        .parallel()
+                        .map(Element.class::cast)
+                        .mapToLong(e -> Long.parseLong(e.getAttribute("n")))
+                        .sum())
+        );
+    }
+
+    @Test
+    void testParallelAttributes() {
+        var root = parseString("<root a='1' b='2' c='3' d='4' e='5'/>").getDocumentElement();
+        assertEquals(List.of("a", "b", "c", "d", "e"),
+                XmlStreams.attributes(root).parallel().map(Attr::getName).toList());
+    }
+
+    @Test
+    void testFindFirstOnWideElementStopsEarly() {
+        // given
+        var touched = new ArrayList<String>();
+        var root = wideElement(1_000, touched);
+        // when
+        var first = XmlStreams.descendantElements(root).findFirst().orElseThrow();
+        // then
+        assertAll(
+                () -> assertEquals("c0", first.getTagName()),
+                // the spliterator looks ahead by one sibling, and no further
+                () -> assertEquals(List.of("c0.nextSibling"), touched)
+        );
+    }
+
+    /**
+     * An element with the given number of childless child elements, which
+     * records the sibling navigation performed on them.
+     */
+    private static Element wideElement(int width, List<String> touched) {
+        var children = new Element[width];
+        var root = element("root", (name, args) -> switch (name) {
+            case "getFirstChild" -> children[0];
+            case "getLastChild" -> {
+                touched.add("root.lastChild");
+                yield children[width - 1];
+            }
+            default -> null;
+        });
+        for (int i = 0; i < width; i++) {
+            int index = i;
+            children[i] = element("c" + i, (name, args) -> switch (name) {
+                case "getNextSibling" -> {
+                    touched.add("c" + index + ".nextSibling");
+                    yield index + 1 < width ? children[index + 1] : null;
+                }
+                case "getParentNode" -> root;
+                default -> null;
+            });
+        }
+        return root;
+    }
+
+    private static Element element(String tagName, BiFunction<String, Object @Nullable [], @Nullable Object> navigation) {
+        return (Element) Proxy.newProxyInstance(Element.class.getClassLoader(), new Class<?>[]{Element.class}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "getTagName", "getNodeName", "getLocalName" -> tagName;
+                    case "getNodeType" -> Node.ELEMENT_NODE;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> tagName;
+                    default -> method.getReturnType() == boolean.class ? false : navigation.apply(method.getName(), args);
+                });
+    }
+
+    @Test
+    void testPrimitiveStreams() {
+        // given
+        var root = parseString("""
+                <lines>
+                    <line qty="2" price="1.5">10</line>
+                    <line price=" 2.5 "> 20 </line>
+                    <line qty="3">30</line>
+                </lines>""").getDocumentElement();
+        // when, then
+        assertAll(
+                () -> assertEquals(5, XmlStreams.intAttribute(XmlStreams.descendantElements(root), "qty").sum()),
+                () -> assertArrayEquals(new long[]{2, 3}, XmlStreams.longAttribute(XmlStreams.descendantElements(root), "qty").toArray()),
+                () -> assertEquals(4.0, XmlStreams.doubleAttribute(XmlStreams.descendantElements(root), "price").sum()),
+                () -> assertEquals(60, XmlStreams.intContent(XmlStreams.descendantElements(root)).sum()),
+                () -> assertEquals(30L, XmlStreams.longContent(XmlStreams.descendantElements(root)).max().orElseThrow()),
+                () -> assertEquals(3, XmlStreams.doubleContent(XmlStreams.descendantElements(root, "line")).count()),
+                () -> assertThrows(NumberFormatException.class,
+                        () -> XmlStreams.intAttribute(XmlStreams.descendantElements(root), "price").sum())
+        );
+    }
+
+    @Test
+    void testPrimitiveStreamsSplitAndClose() {
+        // given
+        var src = IntStream.range(0, 10_000)
+                .mapToObj(i -> i % 4 == 0 ? "<v/>" : "<v n='%d'/>".formatted(i))
+                .collect(Collectors.joining("", "<r>", "</r>"));
+        var root = Xml.freeze(Xml.parse(src)).getDocumentElement();
+        var closed = new boolean[1];
+        var expected = IntStream.range(0, 10_000).filter(i -> i % 4 != 0).asLongStream().summaryStatistics();
+        // when
+        var spliterator = XmlStreams.intAttribute(XmlStreams.descendantElements(root), "n").spliterator();
+        LongSummaryStatistics stats;
+        try (var values = XmlStreams.longAttribute(XmlStreams.descendantElements(root).parallel().onClose(() -> closed[0] = true), "n")) {
+            stats = values.summaryStatistics();
+            assertTrue(values.isParallel());
+        }
+        // then
+        assertAll(
+                () -> assertNotNull(spliterator.trySplit()),
+                () -> assertEquals(expected.getSum(), stats.getSum()),
+                () -> assertEquals(expected.getCount(), stats.getCount()),
+                () -> assertTrue(closed[0])
+        );
+    }
+
+    @Test
+    void testRecords() {
+        // given
+        var src = """
+                <?xml version='1.0'?>
+                <export>
+                    <header><record id='0'/></header>
+                    <records>
+                        <record id='1'><qty>10</qty></record>
+                        <record id='2'><qty>20</qty><record id='3'/></record>
+                        <other/>
+                    </records>
+                </export>""";
+        // when
+        try (var records = XmlStreams.records(bytes(src), "record")) {
+            var list = records.toList();
+            // then
+            assertAll(
+                    () -> assertEquals(List.of("0", "1", "2"),
+                            list.stream().map(e -> e.getAttribute("id")).toList()),
+                    // each record is the document element of a fragment of its own
+                    () -> assertEquals(3L, list.stream().map(Element::getOwnerDocument).distinct().count()),
+                    () -> assertTrue(list.stream()
+                            .allMatch(e -> e.getOwnerDocument().getDocumentElement() == e)),
+                    // the navigators and typed parsers work on the fragments
+                    () -> assertEquals(30, list.stream()
+                            .flatMap(XmlFunctions.elements("qty"))
+                            .mapToInt(e -> XmlFunctions.intContent(e).orElseThrow())
+                            .sum()),
+                    // nested records are part of their enclosing fragment
+                    () -> assertEquals(1L, list.get(2).getElementsByTagName("record").getLength())
+            );
+        }
+    }
+
+    @Test
+    void testRecordsNamespaced() {
+        // given
+        var src = """
+                <?xml version='1.0'?>
+                <root xmlns='http://example.com/default' xmlns:x='http://example.com/x'>
+                    <x:r n='1'/>
+                    <r n='2'/>
+                    <x:r n='3' x:flag='yes'><x:c/></x:r>
+                </root>""";
+        // when, then
+        assertAll(
+                () -> assertEquals(List.of("1", "3"), XmlStreams
+                        .records(bytes(src), "http://example.com/x", "r")
+                        .map(e -> e.getAttribute("n"))
+                        .toList()),
+                () -> assertEquals(List.of("2"), XmlStreams
+                        .records(bytes(src), "http://example.com/default", "r")
+                        .map(e -> e.getAttribute("n"))
+                        .toList()),
+                // by qualified name
+                () -> assertEquals(2L, XmlStreams.records(bytes(src), "x:r").count()),
+                () -> assertEquals(1L, XmlStreams.records(bytes(src), "r").count()),
+                () -> assertEquals(Optional.of("yes"), XmlStreams
+                        .records(bytes(src), "x:r")
+                        .skip(1)
+                        .findFirst()
+                        .flatMap(XmlFunctions.attributeValue("http://example.com/x", "flag"))),
+                () -> assertEquals(1L, XmlStreams
+                        .records(bytes(src), "x:r")
+                        .flatMap(XmlFunctions.elements("http://example.com/x", "c"))
+                        .count())
+        );
+    }
+
+    @Test
+    void testRecordsMalformedInput() {
+        var records = XmlStreams.records(bytes("<root><record/><record>"), "record");
+        assertThrows(XmlException.class, records::count);
+    }
+
+    @Test
+    void testSelect() {
+        // given
+        var src = """
+                <?xml version='1.0'?>
+                <export>
+                    <orders>
+                        <order id='1' status='open'><total>10.50</total></order>
+                        <order id='2' status='closed'><total>20</total></order>
+                        <order id='3' status='open'><total>3</total><note><total>99</total></note></order>
+                    </orders>
+                    <archive><order id='4' status='open'><total>7</total></order></archive>
+                </export>""";
+        // when
+        List<BigDecimal> totals;
+        try (var selected = XmlStreams.select(bytes(src), "/export/orders/order[@status='open']/total")) {
+            totals = selected.map(XmlFunctions::decimalContent).map(Optional::orElseThrow).toList();
+        }
+        // then
+        assertAll(
+                () -> assertEquals(List.of(new BigDecimal("10.50"), new BigDecimal("3")), totals),
+                () -> assertEquals(List.of(1, 3, 4), XmlStreams
+                        .selectAttributes(bytes(src), "//order[@status='open']/@id")
+                        .map(XmlFunctions::intValue)
+                        .map(OptionalInt::orElseThrow)
+                        .toList()),
+                () -> assertEquals(List.of("id", "status"), XmlStreams
+                        .selectAttributes(bytes(src), "export/archive/order/@*")
+                        .map(Attr::getName)
+                        .toList()),
+                () -> assertEquals(List.of("10.50", "20", "3", "99", "7"), XmlStreams
+                        .select(bytes(src), "//order//total")
+                        .map(Element::getTextContent)
+                        .toList()),
+                // nested matches are part of the enclosing fragment
+                () -> assertEquals(List.of("export"), XmlStreams
+                        .select(bytes(src), "//*")
+                        .map(Element::getTagName)
+                        .toList()),
+                () -> assertEquals(0L, XmlStreams.select(bytes(src), "/orders").count()),
+                () -> assertThrows(IllegalArgumentException.class, () -> XmlStreams.select(bytes(src), "//order/@id")),
+                () -> assertThrows(IllegalArgumentException.class, () -> XmlStreams.selectAttributes(bytes(src), "//order"))
+        );
+    }
+
+    @Test
+    void testSelectAgreesWithPaths() {
+        // given
+        var random = new Random(17);
+        var src = new StringBuilder("<r xmlns:p='urn:p'>");
+        for (int i = 0; i < 50; i++) {
+            appendRandomElement(src, random, 4);
+        }
+        var xml = src.append("</r>").toString();
+        var doc = parseStringNameSpaced(xml);
+        // when, then
+        // b elements are leaves, so that no selected element is nested within another
+        for (var path : List.of("/r/a", "//b[@k='1']", "r/*[@k='0']/b", "//p:c/b", "/r/p:c[@k='2']//b", "//*/@k", "/r/b/@*")) {
+            var compiled = XmlPath.compile(path);
+            if (compiled.selectsAttributes()) {
+                assertEquals(
+                        compiled.attributes(doc).map(Attr::getValue).toList(),
+                        XmlStreams.selectAttributes(bytes(xml), path).map(Attr::getValue).toList(),
+                        path
+                );
+            } else {
+                assertEquals(
+                        compiled.elements(doc).map(Element::getTextContent).toList(),
+                        XmlStreams.select(bytes(xml), path).map(Element::getTextContent).toList(),
+                        path
+                );
+            }
+        }
+    }
+
+    private static void appendRandomElement(StringBuilder src, Random random, int depth) {
+        var name = depth == 0 || random.nextInt(3) == 0 ? "b" : random.nextBoolean() ? "a" : "p:c";
+        src.append('<').append(name).append(" k='").append(random.nextInt(3)).append("'>");
+        if (name.equals("b")) {
+            src.append(random.nextInt(1000));
+        } else {
+            for (int i = random.nextInt(4); i > 0; i--) {
+                appendRandomElement(src, random, depth - 1);
+            }
+        }
+        src.append("</").append(name).append('>');
+    }
+
+    private static InputStream bytes(String src) {
+        return new ByteArrayInputStream(src.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,16 +2,35 @@ package io.github.ralfspoeth.xmls;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.Constructor;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
 import static org.junit.jupiter.api.Assertions.*;
 
 class XmlTest {
@@ -186,6 +205,398 @@ class XmlTest {
         assertNotNull(ex.getCause());
     }
 
+    // ------------------------------------------------------------------
+    // byte-oriented sources: buffers, segments, mapped files
+    // ------------------------------------------------------------------
+
+    @Test
+    void parseHeapByteBufferLeavesPositionUnchanged() {
+        var buffer = ByteBuffer.wrap(("garbage" + SIMPLE).getBytes(StandardCharsets.UTF_8));
+        buffer.position("garbage".length());
+        var doc = Xml.parse(buffer);
+        assertEquals("root", doc.getDocumentElement().getTagName());
+        assertEquals("garbage".length(), buffer.position());
+    }
+
+    @Test
+    void parseDirectByteBufferRecognisesNamespaces() {
+        var bytes = NAMESPACED.getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        var doc = Xml.parseNameSpaced(buffer);
+        assertEquals("1", doc.getDocumentElement().getAttributeNS("http://example.com/x", "a"));
+    }
+
+    @Test
+    void parseMemorySegmentDetectsEncodingFromByteOrderMark() {
+        try (var arena = Arena.ofConfined()) {
+            var bytes = "<root>\u00e4\u00f6\u00fc</root>".getBytes(StandardCharsets.UTF_16);
+            var segment = arena.allocate(bytes.length);
+            MemorySegment.copy(bytes, 0, segment, ValueLayout.JAVA_BYTE, 0, bytes.length);
+            assertEquals("\u00e4\u00f6\u00fc", Xml.parse(segment).getDocumentElement().getTextContent());
+            assertEquals("root", Xml.parseNameSpaced(segment).getDocumentElement().getLocalName());
+        }
+    }
+
+    @Test
+    void parseByteBufferDetectsEncodingFromDeclaration() {
+        var src = "<?xml version='1.0' encoding='ISO-8859-1'?><root>\u00e4</root>";
+        var doc = Xml.parse(ByteBuffer.wrap(src.getBytes(StandardCharsets.ISO_8859_1)));
+        assertEquals("\u00e4", doc.getDocumentElement().getTextContent());
+    }
+
+    @Test
+    void parseInvalidByteBufferThrowsXmlException() {
+        var buffer = ByteBuffer.wrap(INVALID.getBytes(StandardCharsets.UTF_8));
+        var ex = assertThrows(XmlException.class, () -> Xml.parse(buffer));
+        assertNotNull(ex.getCause());
+    }
+
+    @Test
+    void parseLargePathIsMemoryMapped(@TempDir Path tmp) throws IOException {
+        var p = tmp.resolve("large.xml");
+        var sb = new StringBuilder("<root>");
+        while (sb.length() < Xml.MAPPING_THRESHOLD) {
+            sb.append("<a n='").append(sb.length()).append("'/>\n");
+        }
+        Files.writeString(p, sb.append("</root>"));
+        assertTrue(Files.size(p) >= Xml.MAPPING_THRESHOLD);
+        var count = Xml.parse(p).getElementsByTagName("a").getLength();
+        assertTrue(count > 0);
+        assertEquals(count, Xml.parseNameSpaced(p).getElementsByTagName("a").getLength());
+    }
+
+    // ------------------------------------------------------------------
+    // parseAll(...)
+    // ------------------------------------------------------------------
+
+    private static List<Path> corpus(Path dir, int size) throws IOException {
+        var paths = new ArrayList<Path>();
+        for (int i = 0; i < size; i++) {
+            var p = dir.resolve("f" + i + ".xml");
+            Files.writeString(p, i % 7 == 3 ? INVALID : "<root n='" + i + "'/>");
+            paths.add(p);
+        }
+        return paths;
+    }
+
+    @Test
+    void parseAllReportsResultsInInputOrder(@TempDir Path tmp) throws IOException {
+        var paths = corpus(tmp, 50);
+        try (var results = Xml.parseAll(paths)) {
+            var list = results.toList();
+            assertEquals(paths, list.stream().map(ParseResult::path).toList());
+            for (int i = 0; i < list.size(); i++) {
+                var r = list.get(i);
+                if (i % 7 == 3) {
+                    assertFalse(r.succeeded());
+                    assertNotNull(r.failure());
+                    assertThrows(XmlException.class, r::orElseThrow);
+                } else {
+                    assertEquals(Integer.toString(i), r.orElseThrow().getDocumentElement().getAttribute("n"));
+                }
+            }
+        }
+    }
+
+    @Test
+    void parseAllInCompletionOrderCoversAllPaths(@TempDir Path tmp) throws IOException {
+        var paths = corpus(tmp, 50);
+        var missing = tmp.resolve("missing.xml");
+        try (var results = Xml.parseAll(Stream.concat(paths.stream(), Stream.of(missing)), 3, false)) {
+            var byPath = results.collect(Collectors.toMap(ParseResult::path, r -> r));
+            assertEquals(51, byPath.size());
+            assertFalse(byPath.get(missing).succeeded());
+            assertEquals(43, byPath.values().stream().filter(ParseResult::succeeded).count());
+        }
+    }
+
+    @Test
+    void parseAllNameSpacedRecognisesNamespaces(@TempDir Path tmp) throws IOException {
+        var p = tmp.resolve("ns.xml");
+        Files.writeString(p, NAMESPACED);
+        try (var results = Xml.parseAllNameSpaced(Stream.of(p, p), 1, true)) {
+            assertEquals(2, results
+                    .map(ParseResult::orElseThrow)
+                    .map(d -> d.getDocumentElement().getAttributeNS("http://example.com/x", "a"))
+                    .filter("1"::equals)
+                    .count());
+        }
+    }
+
+    @Test
+    void parseAllResumesAfterInterruptAndError() throws InterruptedException {
+        for (var ordered : List.of(true, false)) {
+            var release = new CountDownLatch(1);
+            var paths = IntStream.range(0, 5).mapToObj(i -> Path.of("f" + i + ".xml")).toList();
+            Function<Path, Document> parser = p -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new XmlException(e);
+                }
+                if (p.equals(paths.get(2))) {
+                    throw new AssertionError("boom");
+                }
+                return Xml.parse("<r/>");
+            };
+            try (var batch = new BatchParser(paths.iterator(), parser, 2, ordered)) {
+                // interrupted while waiting for the first result
+                Thread.currentThread().interrupt();
+                assertThrows(XmlException.class, batch::next, "ordered " + ordered);
+                assertTrue(Thread.interrupted());
+                release.countDown();
+                // the error of one file, then the remaining results
+                var seen = new ArrayList<Path>();
+                int errors = 0;
+                while (batch.hasNext()) {
+                    try {
+                        seen.add(batch.next().path());
+                    } catch (IllegalStateException e) {
+                        assertInstanceOf(AssertionError.class, e.getCause());
+                        errors++;
+                    }
+                }
+                assertEquals(1, errors, "ordered " + ordered);
+                assertEquals(4, seen.size(), "ordered " + ordered);
+                assertFalse(seen.contains(paths.get(2)));
+            }
+        }
+    }
+
+    @Test
+    void parseAllRejectsNonPositiveParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> Xml.parseAll(Stream.of(), 0, true));
+    }
+
+    @Test
+    void parseResultRequiresEitherDocumentOrFailure() {
+        var p = Path.of("x.xml");
+        assertThrows(IllegalArgumentException.class, () -> new ParseResult(p, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ParseResult(p, Xml.parse(SIMPLE), new XmlException("boom")));
+    }
+
+    // ------------------------------------------------------------------
+    // DocumentBuilder pooling
+    // ------------------------------------------------------------------
+
+    @Test
+    void builderIsReturnedToPoolAfterParse() {
+        Xml.parse(SIMPLE);
+        assertTrue(Xml.DEFAULT_POOL.idleCount() > 0);
+        Xml.parseNameSpaced(NAMESPACED);
+        assertTrue(Xml.NAMESPACE_AWARE_POOL.idleCount() > 0);
+    }
+
+    @Test
+    void pooledBuilderRecoversFromFailedParse() {
+        assertThrows(XmlException.class, () -> Xml.parse(INVALID));
+        assertEquals("root", Xml.parse(SIMPLE).getDocumentElement().getTagName());
+        assertThrows(XmlException.class, () -> Xml.parseNameSpaced(INVALID));
+        assertEquals(
+                "http://example.com/x",
+                Xml.parseNameSpaced(NAMESPACED).getDocumentElement()
+                        .getAttributeNodeNS("http://example.com/x", "a").getNamespaceURI()
+        );
+    }
+
+    @Test
+    void pooledBuildersCanBeSharedByVirtualThreads() throws InterruptedException {
+        var failures = new AtomicInteger();
+        var threads = IntStream.range(0, 200)
+                .mapToObj(i -> Thread.ofVirtual().start(() -> {
+                    var doc = Xml.parse("<root n='" + i + "'/>");
+                    if (!doc.getDocumentElement().getAttribute("n").equals(Integer.toString(i))) {
+                        failures.incrementAndGet();
+                    }
+                }))
+                .toList();
+        for (var t : threads) {
+            t.join();
+        }
+        assertEquals(0, failures.get());
+    }
+
+    @Test
+    void poolDropsInstancesBeyondMaxSize() {
+        var pool = new Pool<>(1, Object::new, o -> true);
+        var a = pool.acquire();
+        var b = pool.acquire();
+        assertNotSame(a, b);
+        pool.release(a);
+        pool.release(b);
+        assertEquals(1, pool.idleCount());
+        assertSame(a, pool.acquire());
+    }
+
+    @Test
+    void poolDropsInstancesThatCannotBeReset() {
+        var pool = new Pool<>(1, Object::new, o -> false);
+        pool.release(pool.acquire());
+        assertEquals(0, pool.idleCount());
+    }
+
+    // ------------------------------------------------------------------
+    // parse options
+    // ------------------------------------------------------------------
+
+    // the number of nodes of each type below the given node, indexed by node type
+    private static int[] countNodes(Node node) {
+        var counts = new int[13];
+        for (var n = node.getFirstChild(); n != null; n = n.getNextSibling()) {
+            counts[n.getNodeType()]++;
+            var below = countNodes(n);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += below[i];
+            }
+        }
+        return counts;
+    }
+
+    @Test
+    void compactOptionsDropIgnorableNodes() {
+        // given
+        var full = Xml.parse(requireNonNull(getClass().getResourceAsStream("/simple.xml")));
+        var compact = Xml.parse(requireNonNull(getClass().getResourceAsStream("/simple.xml")), ParseOptions.COMPACT);
+        // when
+        var fullCounts = countNodes(full);
+        var compactCounts = countNodes(compact);
+        // then
+        assertAll(
+                () -> assertEquals(fullCounts[Node.ELEMENT_NODE], compactCounts[Node.ELEMENT_NODE]),
+                () -> assertEquals(0, compactCounts[Node.COMMENT_NODE]),
+                // only the text of the leaves e to i remains
+                () -> assertEquals(5, compactCounts[Node.TEXT_NODE]),
+                () -> assertTrue(fullCounts[Node.TEXT_NODE] > 3 * compactCounts[Node.TEXT_NODE])
+        );
+    }
+
+    @Test
+    void whitespaceIsKeptInMixedContentAndWherePreserved() {
+        // given
+        var src = """
+                <root>
+                    <p>a <b>b</b> <i>c</i></p>
+                    <pre xml:space='preserve'>
+                        <line/>
+                    </pre>
+                    <blank>   </blank>
+                </root>
+                """;
+        // when
+        var root = Xml.parse(src, ParseOptions.DEFAULT.withStripWhitespace(true)).getDocumentElement();
+        // then
+        assertAll(
+                () -> assertEquals(3, root.getChildNodes().getLength()),
+                () -> assertEquals("a b c", root.getElementsByTagName("p").item(0).getTextContent()),
+                () -> assertEquals(3, root.getElementsByTagName("pre").item(0).getChildNodes().getLength()),
+                () -> assertEquals("   ", root.getElementsByTagName("blank").item(0).getTextContent())
+        );
+    }
+
+    @Test
+    void commentsProcessingInstructionsAndCDataAreHandledSeparately() {
+        // given
+        var src = "<?pi before?><root><!--c--><?pi inside?>x<![CDATA[y]]></root>";
+        // when
+        var noComments = Xml.parse(src, ParseOptions.DEFAULT.withDropComments(true));
+        var noInstructions = Xml.parse(src, ParseOptions.DEFAULT.withDropProcessingInstructions(true));
+        var coalesced = Xml.parse(src, ParseOptions.DEFAULT.withCoalesceCData(true));
+        // then
+        assertAll(
+                () -> assertEquals(0, countNodes(noComments)[Node.COMMENT_NODE]),
+                () -> assertEquals(2, countNodes(noComments)[Node.PROCESSING_INSTRUCTION_NODE]),
+                () -> assertEquals(0, countNodes(noInstructions)[Node.PROCESSING_INSTRUCTION_NODE]),
+                () -> assertEquals(1, countNodes(noInstructions)[Node.COMMENT_NODE]),
+                () -> assertEquals(0, countNodes(coalesced)[Node.CDATA_SECTION_NODE]),
+                () -> assertEquals("xy", coalesced.getDocumentElement().getTextContent())
+        );
+    }
+
+    @Test
+    void namespaceAwareOptionsAndPoolsPerConfiguration() {
+        var doc = Xml.parse(NAMESPACED, ParseOptions.COMPACT.withNamespaceAware(true));
+        assertAll(
+                () -> assertEquals("http://example.com/x",
+                        doc.getDocumentElement().getAttributeNode("x:a").getNamespaceURI()),
+                () -> assertSame(Xml.DEFAULT_POOL, Xml.pool(ParseOptions.DEFAULT.withStripWhitespace(true))),
+                () -> assertSame(Xml.NAMESPACE_AWARE_POOL, Xml.pool(ParseOptions.DEFAULT.withNamespaceAware(true))),
+                () -> assertSame(Xml.pool(ParseOptions.COMPACT),
+                        Xml.pool(ParseOptions.DEFAULT.withDropComments(true).withCoalesceCData(true)))
+        );
+    }
+
+    // ------------------------------------------------------------------
+    // frozen documents
+    // ------------------------------------------------------------------
+
+    private static final String CATALOG = IntStream.range(0, 50)
+            .mapToObj(g -> IntStream.range(0, 40)
+                    .mapToObj(i -> "<item id='" + g + "-" + i + "' n='" + i + "'>" + (g * 40 + i) + "</item>")
+                    .collect(Collectors.joining("\n", "<group name='g" + g + "'>\n", "\n</group>")))
+            .collect(Collectors.joining("\n", "<catalog>\n", "\n</catalog>"));
+
+    // a summary of the document read through XmlStreams and XmlFunctions
+    private static List<Object> fingerprint(Document doc) {
+        var root = doc.getDocumentElement();
+        return List.of(
+                XmlStreams.allElements(doc).map(Element::getTagName).collect(Collectors.joining(",")),
+                XmlStreams.descendantElements(root, "item")
+                        .map(XmlFunctions.attributeValue("id"))
+                        .map(o -> o.orElse("?"))
+                        .collect(Collectors.joining(",")),
+                Stream.of((Node) root)
+                        .flatMap(XmlFunctions.elements("group"))
+                        .flatMap(XmlFunctions.elements("item"))
+                        .mapToLong(e -> XmlFunctions.longContentOr(e, -1) + XmlFunctions.intValueOr(e.getAttributeNode("n"), -1))
+                        .sum(),
+                XmlStreams.childNodes(root).count(),
+                XmlStreams.descendantElements(root, "group")
+                        .flatMap(XmlStreams::attributes)
+                        .map(Attr::getValue)
+                        .collect(Collectors.joining(",")),
+                root.getTextContent().length()
+        );
+    }
+
+    private static void assertConsistentUnderConcurrentReads(Document shared, List<Object> expected) throws Exception {
+        var start = new CountDownLatch(1);
+        var results = new ArrayList<Future<List<Object>>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 300; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return fingerprint(shared);
+                }));
+            }
+            start.countDown();
+        }
+        for (var r : results) {
+            assertEquals(expected, r.get());
+        }
+    }
+
+    @Test
+    void frozenDocumentIsConsistentUnderConcurrentReads() throws Exception {
+        var expected = fingerprint(Xml.parse(CATALOG));
+        var frozen = Xml.freeze(Xml.parse(CATALOG));
+        assertConsistentUnderConcurrentReads(frozen, expected);
+    }
+
+    @Test
+    void frozenParseIsConsistentUnderConcurrentReads() throws Exception {
+        var expected = fingerprint(Xml.parse(CATALOG));
+        var frozen = Xml.parse(CATALOG, ParseOptions.DEFAULT.withFrozen(true));
+        assertConsistentUnderConcurrentReads(frozen, expected);
+    }
+
+    @Test
+    void freezeKeepsTheDocument() {
+        var doc = Xml.parse(NAMESPACED);
+        assertSame(doc, Xml.freeze(doc));
+        assertEquals("1", doc.getDocumentElement().getAttribute("x:a"));
+    }
+
     // ------------------------------------------------------------------
     // Structural / utility coverage
     // ------------------------------------------------------------------